@@ -0,0 +1,58 @@
+package org.rypt.f8;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, striped pool of byte arrays for reading streams. Each thread probes a few slots starting from
+ * a hash of its id, so that concurrent threads rarely contend for, or miss, a pooled array. Unlike a
+ * {@link ThreadLocal}, the pool retains at most one array per slot however many (virtual) threads use it.
+ */
+final class BufferPool {
+
+    private BufferPool() { throw new AssertionError(); }
+
+    private static final int STRIPES = Integer.highestOneBit(Math.max(64, Runtime.getRuntime().availableProcessors() * 4) * 2 - 1);
+    private static final int MASK = STRIPES - 1;
+    private static final int PROBES = 4;
+    private static final int MAX_POOLED_SIZE = 1 << 16;
+
+    private static final AtomicReferenceArray<byte[]> slots = new AtomicReferenceArray<>(STRIPES);
+
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        return (int)(id * 0x9e3779b97f4a7c15L >>> 40) & MASK;
+    }
+
+    /**
+     * Returns a pooled array of at least the specified size, or else a new array of exactly that size,
+     * which must be at least the length of the longest UTF-8 sequence
+     */
+    static byte[] acquire(int size) {
+        if (size < 4) {
+            throw new IllegalArgumentException("bufferSize: " + size);
+        }
+        AtomicReferenceArray<byte[]> slots = BufferPool.slots;
+        for (int i = index(), p = 0; p < PROBES; p++, i = i + 1 & MASK) {
+            byte[] b = slots.get(i);
+            if (b != null && b.length >= size && slots.compareAndSet(i, b, null)) {
+                return b;
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Returns an array to the pool, unless it is too large or the probed slots are full
+     */
+    static void release(byte[] b) {
+        if (b.length > MAX_POOLED_SIZE) {
+            return;
+        }
+        AtomicReferenceArray<byte[]> slots = BufferPool.slots;
+        for (int i = index(), p = 0; p < PROBES; p++, i = i + 1 & MASK) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, b)) {
+                return;
+            }
+        }
+    }
+}
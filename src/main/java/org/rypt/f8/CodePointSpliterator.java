@@ -0,0 +1,112 @@
+package org.rypt.f8;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A spliterator over the code points of a UTF-8 encoded byte array range, which splits at code point boundaries
+ * as defined by {@link Parallel#boundary(byte[], int, int)}, so that each half decodes to exactly the code points
+ * that the whole range would decode to there. Each malformed sequence is reported as {@code U+FFFD}, exactly as
+ * {@link Utf8Handler#handleError()} would be called for it. A range which is known to be all ASCII reports its
+ * exact size; otherwise, the remaining byte count is an upper bound.
+ */
+final class CodePointSpliterator implements Spliterator.OfInt {
+
+    private final byte[] b;
+    private int index;
+    private final int to;
+    //the index up to which the bytes are known to be ASCII
+    private final int asciiEnd;
+
+    CodePointSpliterator(byte[] b, int from, int to, int asciiEnd) {
+        this.b = b;
+        this.index = from;
+        this.to = to;
+        this.asciiEnd = asciiEnd;
+    }
+
+    @Override
+    public OfInt trySplit() {
+        int from = index;
+        int mid = from + (to - from >>> 1);
+        if (mid >= asciiEnd) {
+            mid = Parallel.boundary(b, mid, to);
+        }
+        if (mid == from || mid == to) {
+            return null;
+        }
+        index = mid;
+        return new CodePointSpliterator(b, from, mid, Math.min(asciiEnd, mid));
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        Objects.requireNonNull(action);
+        int i = index;
+        if (i >= to) {
+            return false;
+        }
+        int b1 = b[i];
+        if (b1 >= 0) {
+            index = i + 1;
+            action.accept(b1);
+        } else {
+            action.accept(next(b1, i));
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        Objects.requireNonNull(action);
+        byte[] b = this.b;
+        int to = this.to;
+        for (int i = index; i < to; i = index) {
+            int b1 = b[i];
+            if (b1 >= 0) {
+                index = i + 1;
+                action.accept(b1);
+            } else {
+                action.accept(next(b1, i));
+            }
+        }
+    }
+
+    /**
+     * Decodes the multi-byte or malformed sequence starting at the specified index, and advances past it
+     */
+    private int next(int b1, int i) {
+        byte[] b = this.b;
+        int to = this.to;
+        int n = Utf8Charset.sequenceLength(b1, i + 1 < to ? b[i + 1] : 0, i + 2 < to ? b[i + 2] : 0,
+                i + 3 < to ? b[i + 3] : 0, to - i);
+        switch (n) {
+            case 2:
+                index = i + 2;
+                return Utf8.codePoint(b1, b[i + 1]);
+            case 3:
+                index = i + 3;
+                return Utf8.codePoint(b1, b[i + 1], b[i + 2]);
+            case 4:
+                index = i + 4;
+                return Utf8.codePoint(b1, b[i + 1], b[i + 2], b[i + 3]);
+            case 0: //a truncated sequence at the end is a single error
+                index = to;
+                return 0xfffd;
+            default:
+                index = i - n;
+                return 0xfffd;
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return asciiEnd == to ? ORDERED | NONNULL | SIZED | SUBSIZED : ORDERED | NONNULL;
+    }
+}
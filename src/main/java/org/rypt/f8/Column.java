@@ -0,0 +1,112 @@
+package org.rypt.f8;
+
+/**
+ * Validation of a column of strings stored as UTF-8 bytes, one after another, with an offset array which holds the
+ * start index of each row, followed by the end index of the last row.
+ */
+final class Column {
+
+    private Column() { throw new AssertionError(); }
+
+    //the number of bytes of whole rows which are validated at once
+    private static final int CHUNK = 4096;
+
+    static void validate(byte[] b, int[] offsets, int rows, long[] bitmap, int[] codePoints) {
+        for (int r = 0; r < rows; ) {
+            int from = offsets[r];
+            int end = r + 1;
+            while (end < rows && offsets[end] - from < CHUNK) {
+                end++;
+            }
+            int to = offsets[end];
+            //a valid chunk is a run of whole sequences; if each row starts one of them, each row is valid too
+            Validity v = __.vectorValidity(b, from, to);
+            if (v == Validity.ASCII || v == Validity.UNDERFLOW_R0 && startsSequences(b, offsets, r + 1, end, to)) {
+                for (int i = r; i < end; i++) {
+                    bitmap[i >>> 6] |= 1L << i;
+                }
+                if (codePoints != null) {
+                    for (int i = r; i < end; i++) {
+                        codePoints[i] = v == Validity.ASCII ? offsets[i + 1] - offsets[i]
+                                : countCodePoints(b, offsets[i], offsets[i + 1]);
+                    }
+                }
+            } else {
+                validateRows(b, offsets, r, end, bitmap);
+                if (codePoints != null) {
+                    for (int i = r; i < end; i++) {
+                        codePoints[i] = (bitmap[i >>> 6] & 1L << i) != 0
+                                ? countCodePoints(b, offsets[i], offsets[i + 1])
+                                : Utf8.countCodePoints(b, offsets[i], offsets[i + 1]);
+                    }
+                }
+            }
+            r = end;
+        }
+    }
+
+    /**
+     * Counts the non-continuation bytes of a valid row. Rows are too short for {@link __#countChars} to pay off.
+     */
+    private static int countCodePoints(byte[] b, int off, int to) {
+        int continuations = 0;
+        for (int i = off; i < to; i++) {
+            continuations += b[i] + 64 >>> 31; //10xxxxxx
+        }
+        return to - off - continuations;
+    }
+
+    /**
+     * Tests if each of the specified rows which is not empty starts with a byte other than a continuation byte
+     */
+    private static boolean startsSequences(byte[] b, int[] offsets, int r, int end, int to) {
+        for (int i = r; i < end; i++) {
+            int off = offsets[i];
+            if (off < to && b[off] < (byte)0xc0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the DFA of {@link DfaLoop} over each of the specified rows, 4 rows at a time, so that the latency of each
+     * row's chain of state transitions overlaps with that of the other 3
+     */
+    private static void validateRows(byte[] b, int[] offsets, int r, int end, long[] bitmap) {
+        long[] t = DfaLoop.ROWS;
+        int i = r;
+        for (; i + 4 <= end; i += 4) {
+            int p0 = offsets[i], p1 = offsets[i + 1], p2 = offsets[i + 2], p3 = offsets[i + 3], e3 = offsets[i + 4];
+            int n0 = p1 - p0, n1 = p2 - p1, n2 = p3 - p2, n3 = e3 - p3;
+            int n = Math.min(Math.min(n0, n1), Math.min(n2, n3));
+            long s0 = DfaLoop.ACCEPT, s1 = DfaLoop.ACCEPT, s2 = DfaLoop.ACCEPT, s3 = DfaLoop.ACCEPT;
+            for (int k = 0; k < n; k++) {
+                s0 = t[b[p0 + k] & 0xff] >>> s0;
+                s1 = t[b[p1 + k] & 0xff] >>> s1;
+                s2 = t[b[p2 + k] & 0xff] >>> s2;
+                s3 = t[b[p3 + k] & 0xff] >>> s3;
+            }
+            setIfAccepted(bitmap, i, finish(t, b, p0 + n, p1, s0));
+            setIfAccepted(bitmap, i + 1, finish(t, b, p1 + n, p2, s1));
+            setIfAccepted(bitmap, i + 2, finish(t, b, p2 + n, p3, s2));
+            setIfAccepted(bitmap, i + 3, finish(t, b, p3 + n, e3, s3));
+        }
+        for (; i < end; i++) {
+            setIfAccepted(bitmap, i, finish(t, b, offsets[i], offsets[i + 1], DfaLoop.ACCEPT));
+        }
+    }
+
+    private static long finish(long[] t, byte[] b, int off, int to, long s) {
+        for (; off < to; off++) {
+            s = t[b[off] & 0xff] >>> s;
+        }
+        return s;
+    }
+
+    private static void setIfAccepted(long[] bitmap, int i, long s) {
+        if (((int)s & DfaLoop.MASK) == DfaLoop.ACCEPT) {
+            bitmap[i >>> 6] |= 1L << i;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package org.rypt.f8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A table-driven alternative to {@link StateLoop}, after Bjoern Hoehrmann's UTF-8 DFA: each byte is mapped to one of
+ * 12 classes, and each state and class to the next state. The two tables are folded into one 64-bit row per byte,
+ * which holds the next state for every current state at a shift of that current state, so that each step takes one
+ * load (which does not depend on the state) and one shift, and no data-dependent branches.
+ * Handler events, incomplete states and validities are identical to those of the branchy loops; events are
+ * dispatched on the length of each sequence once the DFA accepts or rejects it.
+ */
+final class DfaLoop extends Loop {
+
+    //byte classes
+    private static final int ASC = 0;  //00..7F
+    private static final int C80 = 1;  //80..8F
+    private static final int C90 = 2;  //90..9F
+    private static final int CA0 = 3;  //A0..BF
+    private static final int L2 = 4;   //C2..DF
+    private static final int LE0 = 5;  //E0
+    private static final int L3 = 6;   //E1..EC, EE..EF
+    private static final int LED = 7;  //ED
+    private static final int LF0 = 8;  //F0
+    private static final int L4 = 9;   //F1..F3
+    private static final int LF4 = 10; //F4
+    private static final int BAD = 11; //C0..C1, F5..FF
+
+    //states, as shifts into a row
+    static final int ACCEPT = 0;
+    private static final int NEED1 = 6;     //any 1 continuation byte
+    private static final int NEED2 = 12;    //any 2 continuation bytes
+    private static final int NEED3 = 18;    //any 3 continuation bytes
+    private static final int AFTER_E0 = 24; //A0..BF, then 1 more
+    private static final int AFTER_ED = 30; //80..9F, then 1 more
+    private static final int AFTER_F0 = 36; //90..BF, then 2 more
+    private static final int AFTER_F4 = 42; //80..8F, then 2 more
+    private static final int REJECT = 48;
+    static final int MASK = 63;
+
+    /**
+     * The next state of {@code s} after byte {@code b} is {@code ROWS[b & 0xff] >>> s & MASK}
+     */
+    static final long[] ROWS = new long[256];
+
+    static {
+        final int A = ACCEPT, R = REJECT;
+        int[][] next = {
+                //ASC  C80    C90       CA0    L2     LE0       L3     LED       LF0       L4     LF4       BAD
+                {A,    R,     R,        R,     NEED1, AFTER_E0, NEED2, AFTER_ED, AFTER_F0, NEED3, AFTER_F4, R}, //ACCEPT
+                {R,    A,     A,        A,     R,     R,        R,     R,        R,        R,     R,        R}, //NEED1
+                {R,    NEED1, NEED1,    NEED1, R,     R,        R,     R,        R,        R,     R,        R}, //NEED2
+                {R,    NEED2, NEED2,    NEED2, R,     R,        R,     R,        R,        R,     R,        R}, //NEED3
+                {R,    R,     R,        NEED1, R,     R,        R,     R,        R,        R,     R,        R}, //AFTER_E0
+                {R,    NEED1, NEED1,    R,     R,     R,        R,     R,        R,        R,     R,        R}, //AFTER_ED
+                {R,    R,     NEED2,    NEED2, R,     R,        R,     R,        R,        R,     R,        R}, //AFTER_F0
+                {R,    NEED2, R,        R,     R,     R,        R,     R,        R,        R,     R,        R}, //AFTER_F4
+                {R,    R,     R,        R,     R,     R,        R,     R,        R,        R,     R,        R}, //REJECT
+        };
+        for (int i = 0; i < 256; i++) {
+            int c = i < 0x80 ? ASC : i < 0x90 ? C80 : i < 0xa0 ? C90 : i < 0xc0 ? CA0 : i < 0xc2 ? BAD
+                    : i < 0xe0 ? L2 : i == 0xe0 ? LE0 : i == 0xed ? LED : i < 0xf0 ? L3
+                    : i == 0xf0 ? LF0 : i < 0xf4 ? L4 : i == 0xf4 ? LF4 : BAD;
+            long row = 0;
+            for (int s = 0; s < next.length; s++) {
+                row |= (long)next[s][c] << s * 6;
+            }
+            ROWS[i] = row;
+        }
+    }
+
+    //the number of bytes between checks for REJECT, or for a run of ASCII, while validating
+    private static final int BLOCK = 64;
+
+    @Override
+    public Validity validity(byte[] b, int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        int i = __.skipAscii(b, from, to);
+        if (i == to) {
+            return Validity.ASCII;
+        }
+        long[] rows = ROWS;
+        long s = ACCEPT; //only the low 6 bits of a shift count are used, so the state needn't be masked
+        while (i < to) {
+            for (int end = Math.min(to, i + BLOCK); i < end; i++) {
+                s = rows[b[i] & 0xff] >>> s;
+            }
+            int state = (int)s & MASK;
+            if (state == REJECT) { //REJECT is absorbing
+                return Validity.MALFORMED;
+            } else if (state == ACCEPT) {
+                i = __.skipAscii(b, i, to);
+            }
+        }
+        if (((int)s & MASK) == ACCEPT) {
+            return Validity.UNDERFLOW_R0;
+        }
+        int k = 1;
+        while (b[to - k] < (byte)0xc0) { //back up to the prefix byte of the truncated sequence
+            k++;
+        }
+        return Validity.values()[Validity.UNDERFLOW_R0.ordinal() + k];
+    }
+
+    @Override
+    <X extends Exception> int loop(byte[] b, int off, int to, Utf8ByteHandler<X> handler) throws X {
+        long[] rows = ROWS;
+        int s = ACCEPT;
+        int start = off; //the index of the prefix byte of the current sequence
+        while (off < to) {
+            int b1 = b[off];
+            if (s == ACCEPT && b1 >= 0) { //0xxxxxxx
+                int end = __.skipAscii(b, off + 1, to);
+                handler.handleAsciiRun(b, off, end);
+                start = off = end;
+                continue;
+            }
+            s = (int)(rows[b1 & 0xff] >>> s) & MASK;
+            if (s == ACCEPT) {
+                switch (off - start) {
+                    case 1:
+                        handler.handle2ByteCodePoint(b[start], b1);
+                        break;
+                    case 2:
+                        handler.handle3ByteCodePoint(b[start], b[start + 1], b1);
+                        break;
+                    default:
+                        handler.handle4ByteCodePoint(b[start], b[start + 1], b[start + 2], b1);
+                }
+                start = ++off;
+            } else if (s == REJECT) {
+                s = ACCEPT;
+                switch (off - start) {
+                    case 0:
+                        handler.handlePrefixError(b1);
+                        off++;
+                        break;
+                    case 1:
+                        int p = b[start];
+                        handler.handleContinuationError(p, b1);
+                        if (p == (byte)0xed && b1 < (byte)0xc0) { //a surrogate: its continuation bytes are ignored
+                            handler.handleIgnoredByte(b1);
+                            if (++off == to) {
+                                return Utf8.SURROGATE_PREFIX;
+                            }
+                            int b3 = b[off];
+                            if (b3 < (byte)0xc0) {
+                                handler.handleIgnoredByte(b3);
+                                off++;
+                            }
+                        }
+                        break;
+                    case 2:
+                        handler.handleContinuationError(b[start], b[start + 1], b1);
+                        break;
+                    default:
+                        handler.handleContinuationError(b[start], b[start + 1], b[start + 2], b1);
+                }
+                start = off;
+            } else {
+                off++;
+            }
+        }
+        return s == ACCEPT ? 0 : incompleteState(to - start, b[start],
+                start + 1 < to ? b[start + 1] : 0, start + 2 < to ? b[start + 2] : 0);
+    }
+
+    @Override
+    <X extends Exception> int loop(ByteBuffer b, int off, int to, Utf8ByteHandler<X> handler) throws X {
+        long[] rows = ROWS;
+        int s = ACCEPT;
+        int start = off;
+        while (off < to) {
+            int b1 = b.get(off);
+            if (s == ACCEPT && b1 >= 0) { //0xxxxxxx
+                handler.handle1ByteCodePoint(b1);
+                start = ++off;
+                continue;
+            }
+            s = (int)(rows[b1 & 0xff] >>> s) & MASK;
+            if (s == ACCEPT) {
+                switch (off - start) {
+                    case 1:
+                        handler.handle2ByteCodePoint(b.get(start), b1);
+                        break;
+                    case 2:
+                        handler.handle3ByteCodePoint(b.get(start), b.get(start + 1), b1);
+                        break;
+                    default:
+                        handler.handle4ByteCodePoint(b.get(start), b.get(start + 1), b.get(start + 2), b1);
+                }
+                start = ++off;
+            } else if (s == REJECT) {
+                s = ACCEPT;
+                switch (off - start) {
+                    case 0:
+                        handler.handlePrefixError(b1);
+                        off++;
+                        break;
+                    case 1:
+                        int p = b.get(start);
+                        handler.handleContinuationError(p, b1);
+                        if (p == (byte)0xed && b1 < (byte)0xc0) {
+                            handler.handleIgnoredByte(b1);
+                            if (++off == to) {
+                                return Utf8.SURROGATE_PREFIX;
+                            }
+                            int b3 = b.get(off);
+                            if (b3 < (byte)0xc0) {
+                                handler.handleIgnoredByte(b3);
+                                off++;
+                            }
+                        }
+                        break;
+                    case 2:
+                        handler.handleContinuationError(b.get(start), b.get(start + 1), b1);
+                        break;
+                    default:
+                        handler.handleContinuationError(b.get(start), b.get(start + 1), b.get(start + 2), b1);
+                }
+                start = off;
+            } else {
+                off++;
+            }
+        }
+        return s == ACCEPT ? 0 : incompleteState(to - start, b.get(start),
+                start + 1 < to ? b.get(start + 1) : 0, start + 2 < to ? b.get(start + 2) : 0);
+    }
+
+    /**
+     * Returns the state of {@link Utf8#nextState(int, byte, Utf8ByteHandler)} after the specified number of bytes
+     * of an incomplete sequence
+     */
+    private static int incompleteState(int n, int b1, int b2, int b3) {
+        switch (n) {
+            case 1:
+                return b1;
+            case 2:
+                return b1 << 8 | b2 & 0xff;
+            default:
+                return b1 << 16 | b2 << 8 & 0xff00 | b3 & 0xff;
+        }
+    }
+}
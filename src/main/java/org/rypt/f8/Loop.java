@@ -0,0 +1,91 @@
+package org.rypt.f8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The parts of a decoding loop which every {@link Utf8Engine} shares: resuming from an incomplete or error state,
+ * and unwrapping heap buffers. Subclasses implement the loops themselves, from the initial state; the calls which
+ * a loop makes to the handler must be made from the subclass, so that {@link Utf8#specialize(Class)} copies them.
+ */
+abstract class Loop implements Utf8Engine {
+
+    @Override
+    public final <X extends Exception> int nextState(int state, byte[] b, int from, int to, Utf8ByteHandler<X> handler) throws X {
+        if (from >= to) {
+            if (from > to) {
+                throw new IllegalArgumentException(from + " > " + to);
+            }
+            return state;
+        }
+
+        if (state < 0) {
+            byte n;
+            do {
+                state = Utf8.nextState(state, n = b[from++], handler);
+                if (from == to)
+                    return state;
+            } while (state != 0 && state != n);
+            from += state >> 31;
+        }
+
+        return loop(b, from, to, handler);
+    }
+
+    @Override
+    public final <X extends Exception> int nextState(int state, ByteBuffer buf, Utf8ByteHandler<X> handler) throws X {
+        int from = buf.position();
+        int to = buf.limit();
+        if (buf.hasArray()) {
+            int off = buf.arrayOffset();
+            state = nextState(state, buf.array(), off + from, off + to, handler);
+        } else {
+            state = nextState(state, buf, from, to, handler);
+        }
+        buf.position(to);
+        return state;
+    }
+
+    private <X extends Exception> int nextState(int state, ByteBuffer b, int from, int to, Utf8ByteHandler<X> handler) throws X {
+        if (from == to) {
+            return state;
+        }
+
+        if (state < 0) {
+            byte n;
+            do {
+                state = Utf8.nextState(state, n = b.get(from++), handler);
+                if (from == to)
+                    return state;
+            } while (state != 0 && state != n);
+            from += state >> 31;
+        }
+
+        return loop(b, from, to, handler);
+    }
+
+    /**
+     * Transfers the specified bytes to the specified handler, starting from the initial state. Every run of ASCII
+     * bytes, including a leading one, is passed to {@link Utf8ByteHandler#handleAsciiRun(byte[], int, int)}.
+     * @param b the byte array
+     * @param off the start index, which is less than {@code to}
+     * @param to the end index, exclusive
+     * @param handler the handler
+     * @param <X> the handler exception type
+     * @return the next UTF-8 state
+     * @throws X if the handler threw this exception
+     */
+    abstract <X extends Exception> int loop(byte[] b, int off, int to, Utf8ByteHandler<X> handler) throws X;
+
+    /**
+     * Transfers the specified bytes of a direct buffer to the specified handler, starting from the initial state,
+     * without modifying its position
+     * @param b the direct buffer
+     * @param from the start index, which is less than {@code to}
+     * @param to the end index, exclusive
+     * @param handler the handler
+     * @param <X> the handler exception type
+     * @return the next UTF-8 state
+     * @throws X if the handler threw this exception
+     */
+    abstract <X extends Exception> int loop(ByteBuffer b, int from, int to, Utf8ByteHandler<X> handler) throws X;
+}
@@ -0,0 +1,193 @@
+package org.rypt.f8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join tasks which split their input at code point boundaries and merge the results of each half.
+ */
+final class Parallel {
+
+    private Parallel() { throw new AssertionError(); }
+
+    /**
+     * Returns the first index at or after {@code mid} which could start a code point when resuming
+     * from the initial state: either the first non-continuation byte, or the index after
+     * 3 continuation bytes (which either complete a 4-byte sequence or are malformed).
+     */
+    static int boundary(byte[] b, int mid, int to) {
+        for (int end = Math.min(mid + 3, to); mid < end; mid++) {
+            if (b[mid] > (byte)0xbf) {
+                break;
+            }
+        }
+        return mid;
+    }
+
+    /**
+     * Returns the validity of the concatenation of two ranges, where the second
+     * range is nonempty and starts at a boundary as defined by {@link #boundary(byte[], int, int)}.
+     */
+    static Validity concat(Validity left, Validity right) {
+        switch (left) {
+            case ASCII:
+                return right;
+            case UNDERFLOW_R0:
+                return right == Validity.ASCII ? Validity.UNDERFLOW_R0 : right;
+            default: //a truncated sequence followed by a non-continuation byte is malformed
+                return Validity.MALFORMED;
+        }
+    }
+
+    static final class ArrayValidity extends RecursiveTask<Validity> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] b;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        ArrayValidity(byte[] b, int from, int to, int chunkSize) {
+            this.b = b;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Validity compute() {
+            if (to - from > chunkSize) {
+                int mid = boundary(b, from + (to - from >>> 1), to);
+                if (mid != to) {
+                    ArrayValidity right = new ArrayValidity(b, mid, to, chunkSize);
+                    right.fork();
+                    Validity left = new ArrayValidity(b, from, mid, chunkSize).compute();
+                    return concat(left, right.join());
+                }
+            }
+            return __.vectorValidity(b, from, to);
+        }
+    }
+
+    static final class FileValidity extends RecursiveTask<Validity> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel ch;
+        private final long from;
+        private final long to;
+        private final int chunkSize;
+
+        FileValidity(FileChannel ch, long from, long to, int chunkSize) {
+            this.ch = ch;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Validity compute() {
+            try {
+                if (to - from > chunkSize) {
+                    long mid = boundary(from + (to - from >>> 1));
+                    if (mid != to) {
+                        FileValidity right = new FileValidity(ch, mid, to, chunkSize);
+                        right.fork();
+                        Validity left = new FileValidity(ch, from, mid, chunkSize).compute();
+                        return concat(left, right.join());
+                    }
+                }
+                return Utf8.mappedValidity(ch.map(FileChannel.MapMode.READ_ONLY, from, to - from));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private long boundary(long mid) throws IOException {
+            byte[] b = new byte[3];
+            ByteBuffer bb = ByteBuffer.wrap(b, 0, (int)Math.min(3, to - mid));
+            while (bb.hasRemaining()) {
+                if (ch.read(bb, mid + bb.position()) == -1) {
+                    break;
+                }
+            }
+            return mid + Parallel.boundary(b, 0, bb.position());
+        }
+    }
+
+    static final class ArrayStatistics extends RecursiveTask<Utf8Statistics> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] b;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        ArrayStatistics(byte[] b, int from, int to, int chunkSize) {
+            this.b = b;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Utf8Statistics compute() {
+            if (to - from > chunkSize) {
+                int mid = from + (to - from >>> 1);
+                ArrayStatistics right = new ArrayStatistics(b, mid, to, chunkSize);
+                right.fork();
+                Utf8Statistics left = new ArrayStatistics(b, from, mid, chunkSize).compute();
+                return left.merge(right.join());
+            }
+            Utf8Statistics stats = new Utf8Statistics();
+            stats.write(b, from, to - from);
+            return stats;
+        }
+    }
+
+    static final class FileStatistics extends RecursiveTask<Utf8Statistics> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel ch;
+        private final long from;
+        private final long to;
+        private final int chunkSize;
+
+        FileStatistics(FileChannel ch, long from, long to, int chunkSize) {
+            this.ch = ch;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Utf8Statistics compute() {
+            if (to - from > chunkSize) {
+                long mid = from + (to - from >>> 1);
+                FileStatistics right = new FileStatistics(ch, mid, to, chunkSize);
+                right.fork();
+                Utf8Statistics left = new FileStatistics(ch, from, mid, chunkSize).compute();
+                return left.merge(right.join());
+            }
+            Utf8Statistics stats = new Utf8Statistics();
+            try {
+                ByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                byte[] b = BufferPool.acquire(Utf8.BUFFER_SIZE);
+                for (int n; (n = Math.min(window.remaining(), b.length)) != 0; ) {
+                    window.get(b, 0, n);
+                    stats.write(b, 0, n);
+                }
+                BufferPool.release(b);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.rypt.f8;
+
+/**
+ * This class encapsulates the possible ways to encode a lone surrogate, i.e., a high surrogate
+ * that is not followed by a low surrogate, or a low surrogate that is not preceded by a high surrogate
+ */
+public enum SurrogatePolicy {
+
+    /**
+     * Encode the lone surrogate as {@code '?'}, exactly as {@link String#getBytes(java.nio.charset.Charset)} does
+     */
+    REPLACE,
+
+    /**
+     * Throw an {@link IllegalArgumentException} that reports the index of the lone surrogate
+     */
+    THROW
+
+}
@@ -2,7 +2,20 @@ package org.rypt.f8;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.atomic.AtomicReference;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * The core UTF-8 state machine.
@@ -16,6 +29,10 @@ public class Utf8 {
     static final int SURROGATE_PREFIX = -1;
     private static final int OTHER_ERROR = -2;
 
+    //the loop shared by all handlers which are not specialized
+    private static final StateLoop LOOP = new StateLoop();
+    private static final DfaLoop DFA = new DfaLoop();
+
     /**
      * Returns the next UTF-8 state given a previous state and a next byte.
      * If the returned state is non-negative, it is a legal non-surrogate unicode code point.
@@ -113,47 +130,296 @@ public class Utf8 {
     }
 
     public static <X extends Exception> int nextState(int state, byte[] b, int from, int to, Utf8ByteHandler<X> handler) throws X {
-        if (from >= to) {
-            if (from > to) {
-                throw new IllegalArgumentException(from + " > " + to);
-            }
+        return LOOP.nextState(state, b, from, to, handler);
+    }
+
+    /**
+     * Transfers the remaining bytes in the specified buffer to the specified handler, without copying them,
+     * starting from the specified state. Upon return, the buffer's position will equal its limit.
+     * @param state the previous UTF-8 state returned from this function, or 0 for the initial state
+     * @param buf the heap or direct byte buffer
+     * @param handler the handler to delegate all code point and error handling to
+     * @param <X> the handler exception type
+     * @return the next UTF-8 state
+     * @throws X if the handler threw this exception
+     * @see Utf8#finish(int, Utf8ByteHandler)
+     */
+    public static <X extends Exception> int nextState(int state, ByteBuffer buf, Utf8ByteHandler<X> handler) throws X {
+        return LOOP.nextState(state, buf, handler);
+    }
+
+    /**
+     * Decodes the specified bytes into the specified char array, starting from the specified state, until either
+     * all bytes have been consumed or the next char(s) would not fit. Malformed input is replaced with
+     * {@code U+FFFD} exactly as {@link Utf8StringBuilder} replaces it. No objects are allocated.
+     * <p>
+     * The result packs the number of chars written, which is available via {@link #decodedChars(long)}, with either
+     * the number of bytes that remain to be decoded because the char array is full, which is available via
+     * {@link #remainingBytes(long)}, or else the final state, which is available via {@link #decodedState(long)}.
+     * If bytes remain, decoding stopped at the start of any incomplete sequence, and the state is 0, so that decoding
+     * may resume from index {@code to - remainingBytes(result)} in the initial state.
+     * Once all bytes have been decoded, the final state should be passed to the next call, or,
+     * at the end of the input, a final {@code U+FFFD} should be written if it {@link #isIncompleteState(int) is incomplete}.
+     * @param state the previous state returned from this function, or 0 for the initial state
+     * @param src the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param dst the char array
+     * @param dstOff the index in the char array at which to write the first char
+     * @param dstLen the maximum number of chars to write, which must be at least 2 if the state is incomplete
+     * @return the packed result
+     * @see #decodedChars(long)
+     * @see #remainingBytes(long)
+     * @see #decodedState(long)
+     */
+    public static long decode(int state, byte[] src, int from, int to, char[] dst, int dstOff, int dstLen) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (dstLen < (isIncompleteState(state) ? 2 : 0)) {
+            throw new IllegalArgumentException("dstLen: " + dstLen);
+        }
+        if (from < 0 || to > src.length) {
+            throw new ArrayIndexOutOfBoundsException(from < 0 ? from : to);
+        }
+        if (dstOff < 0 || dstOff > dst.length - dstLen) {
+            throw new ArrayIndexOutOfBoundsException(dstOff < 0 ? dstOff : dstOff + dstLen);
+        }
+        return __.decode(state, src, from, to, dst, dstOff, dstOff + dstLen);
+    }
+
+    /**
+     * Returns the number of chars written by {@link #decode(int, byte[], int, int, char[], int, int)}
+     * @param result the packed result
+     * @return the number of chars written
+     */
+    public static int decodedChars(long result) {
+        return (int)result;
+    }
+
+    /**
+     * Returns the number of bytes that were not decoded by {@link #decode(int, byte[], int, int, char[], int, int)}
+     * because the char array was full
+     * @param result the packed result
+     * @return the number of bytes, ending at {@code to}, that remain to be decoded, or 0 if all bytes were consumed
+     */
+    public static int remainingBytes(long result) {
+        return Math.max((int)(result >> 32), 0);
+    }
+
+    /**
+     * Returns the state in which {@link #decode(int, byte[], int, int, char[], int, int)} stopped
+     * @param result the packed result
+     * @return the next UTF-8 state, which is 0 if any bytes remain
+     */
+    public static int decodedState(long result) {
+        return Math.min((int)(result >> 32), 0);
+    }
+
+    /**
+     * Decodes the remaining bytes in the specified buffer into the specified char buffer, starting from the specified
+     * state, exactly as {@link #decode(int, byte[], int, int, char[], int, int)} does, and advances both buffers'
+     * positions. If bytes remain in the byte buffer upon return, the char buffer did not have room for the next
+     * char(s), and it should be drained before resuming. No objects are allocated if both buffers are
+     * backed by accessible arrays.
+     * @param state the previous state returned from this function, or 0 for the initial state
+     * @param src the heap or direct byte buffer
+     * @param dst the heap or direct char buffer
+     * @return the next UTF-8 state, which is 0 if any bytes remain unless the char buffer has fewer than 2 chars remaining
+     */
+    public static int decode(int state, ByteBuffer src, CharBuffer dst) {
+        if (!src.hasArray() || !dst.hasArray()) {
+            return decodeCopies(state, src, dst);
+        }
+        if (isIncompleteState(state) && dst.remaining() < 2) {
             return state;
         }
+        int srcOff = src.arrayOffset();
+        int dstOff = dst.arrayOffset() + dst.position();
+        long result = __.decode(state, src.array(), srcOff + src.position(), srcOff + src.limit(),
+                dst.array(), dstOff, dstOff + dst.remaining());
+        src.position(src.limit() - remainingBytes(result));
+        dst.position(dst.position() + decodedChars(result));
+        return decodedState(result);
+    }
 
-        if (state < 0) {
-            byte n;
-            do {
-                state = nextState(state, n = b[from++], handler);
-                if (from == to)
-                    return state;
-            } while (state != 0 && state != n);
-            from += state >> 31;
+    private static int decodeCopies(int state, ByteBuffer src, CharBuffer dst) {
+        byte[] b = new byte[Math.min(src.remaining(), BUFFER_SIZE)];
+        char[] c = new char[Math.min(dst.remaining(), BUFFER_SIZE)];
+        while (src.hasRemaining() && dst.remaining() >= (isIncompleteState(state) ? 2 : 1)) {
+            int n = Math.min(src.remaining(), b.length);
+            int m = Math.min(dst.remaining(), c.length);
+            src.get(b, 0, n);
+            long result = __.decode(state, b, 0, n, c, 0, m);
+            int r = remainingBytes(result);
+            boolean full = r != 0 && m == dst.remaining();
+            src.position(src.position() - r);
+            dst.put(c, 0, decodedChars(result));
+            state = decodedState(result);
+            if (full) {
+                break;
+            }
         }
+        return state;
+    }
 
-        do {
-            int n = b[from++];
-            if (n < 0)
-                return __.state(b, from - 1, to, handler);
-            handler.handle1ByteCodePoint(n);
-        } while (from != to);
+    /**
+     * Returns the number of bytes needed to encode the specified chars, where each lone surrogate is encoded as
+     * {@code '?'}, exactly as {@link String#getBytes(java.nio.charset.Charset)} does
+     * @param s the chars
+     * @return the number of UTF-8 bytes
+     * @throws IllegalArgumentException if the number of bytes exceeds {@link Integer#MAX_VALUE}
+     */
+    public static int encodedLength(CharSequence s) {
+        return encodedLength(s, 0, s.length(), SurrogatePolicy.REPLACE);
+    }
 
-        return 0;
+    /**
+     * Returns the number of bytes needed to encode the specified range of chars
+     * @param s the chars
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param policy how to encode lone surrogates
+     * @return the number of UTF-8 bytes
+     * @throws IllegalArgumentException if the number of bytes exceeds {@link Integer#MAX_VALUE},
+     * or if {@code policy} is {@link SurrogatePolicy#THROW} and the range contains a lone surrogate
+     */
+    public static int encodedLength(CharSequence s, int from, int to, SurrogatePolicy policy) {
+        checkRange(s, from, to);
+        long n = __.encodedLength(s, from, to, policy);
+        if (n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("encoded length overflows int: " + n);
+        }
+        return (int)n;
     }
 
-    private static final int BUFFER_SIZE = 8192;
-    private static final AtomicReference<byte[]> buf = new AtomicReference<>();
+    /**
+     * Encodes the specified range of chars into the specified byte array, where each lone surrogate is encoded
+     * as {@code '?'}, exactly as {@link String#getBytes(java.nio.charset.Charset)} does
+     * @param s the chars, e.g. a {@link String}, or a {@link CharBuffer} wrapping a char array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param dst the byte array
+     * @param off the index in the byte array at which to write the first byte
+     * @return the index after the last byte written
+     * @throws ArrayIndexOutOfBoundsException if the byte array is too small
+     * @see #encodedLength(CharSequence)
+     */
+    public static int encode(CharSequence s, int from, int to, byte[] dst, int off) {
+        return encode(s, from, to, dst, off, SurrogatePolicy.REPLACE);
+    }
 
-    public static <X extends Exception> int nextState(int state, InputStream inputStream, Utf8ByteHandler<X> handler) throws IOException, X {
-        AtomicReference<byte[]> buf = Utf8.buf;
-        byte[] bytes = buf.get();
-        if (bytes == null || !buf.compareAndSet(bytes, null)) {
-            bytes = new byte[BUFFER_SIZE];
+    /**
+     * Encodes the specified range of chars into the specified byte array. The bytes of each code point
+     * are identical to those passed to {@link #codePoint(int, int)}, {@link #codePoint(int, int, int)} or
+     * {@link #codePoint(int, int, int, int)} to recover it.
+     * @param s the chars, e.g. a {@link String}, or a {@link CharBuffer} wrapping a char array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param dst the byte array
+     * @param off the index in the byte array at which to write the first byte
+     * @param policy how to encode lone surrogates
+     * @return the index after the last byte written
+     * @throws ArrayIndexOutOfBoundsException if the byte array is too small
+     * @throws IllegalArgumentException if {@code policy} is {@link SurrogatePolicy#THROW}
+     * and the range contains a lone surrogate
+     * @see #encodedLength(CharSequence, int, int, SurrogatePolicy)
+     */
+    public static int encode(CharSequence s, int from, int to, byte[] dst, int off, SurrogatePolicy policy) {
+        checkRange(s, from, to);
+        if (off < 0 || off > dst.length) {
+            throw new ArrayIndexOutOfBoundsException(off);
         }
+        int end = __.encode(s, from, to, dst, off, dst.length, policy);
+        if (end < 0) {
+            throw new ArrayIndexOutOfBoundsException(dst.length);
+        }
+        return end;
+    }
+
+    /**
+     * Encodes the specified range of chars into the specified buffer, where each lone surrogate is encoded
+     * as {@code '?'}, exactly as {@link String#getBytes(java.nio.charset.Charset)} does, and advances its position
+     * @param s the chars, e.g. a {@link String}, or a {@link CharBuffer} wrapping a char array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param dst the heap or direct byte buffer
+     * @throws BufferOverflowException if the buffer has insufficient space remaining, in which case
+     * its position is unchanged
+     */
+    public static void encode(CharSequence s, int from, int to, ByteBuffer dst) {
+        encode(s, from, to, dst, SurrogatePolicy.REPLACE);
+    }
+
+    /**
+     * Encodes the specified range of chars into the specified buffer, exactly as
+     * {@link #encode(CharSequence, int, int, byte[], int, SurrogatePolicy)} does, and advances its position
+     * @param s the chars, e.g. a {@link String}, or a {@link CharBuffer} wrapping a char array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param dst the heap or direct byte buffer
+     * @param policy how to encode lone surrogates
+     * @throws BufferOverflowException if the buffer has insufficient space remaining, in which case
+     * its position is unchanged
+     * @throws IllegalArgumentException if {@code policy} is {@link SurrogatePolicy#THROW}
+     * and the range contains a lone surrogate
+     */
+    public static void encode(CharSequence s, int from, int to, ByteBuffer dst, SurrogatePolicy policy) {
+        checkRange(s, from, to);
+        int end;
+        if (dst.hasArray()) {
+            int off = dst.arrayOffset();
+            end = __.encode(s, from, to, dst.array(), off + dst.position(), off + dst.limit(), policy) - off;
+        } else {
+            end = __.encode(s, from, to, dst, dst.position(), dst.limit(), policy);
+        }
+        if (end < 0) {
+            throw new BufferOverflowException();
+        }
+        dst.position(end);
+    }
+
+    private static void checkRange(CharSequence s, int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (from < 0 || to > s.length()) {
+            throw new IndexOutOfBoundsException(from < 0 ? "from: " + from : "to: " + to);
+        }
+    }
+
+    static final int BUFFER_SIZE = 8192;
+    private static final int MAP_SIZE = 1 << 28;
+    static final int PARALLEL_ARRAY_CHUNK_SIZE = 1 << 20;
+    static final int PARALLEL_FILE_CHUNK_SIZE = 1 << 24;
+
+    public static <X extends Exception> int nextState(int state, InputStream inputStream, Utf8ByteHandler<X> handler) throws IOException, X {
+        return nextState(state, inputStream, handler, BUFFER_SIZE);
+    }
+
+    /**
+     * Transfers all bytes of the specified input stream to the specified handler, reading them
+     * into a pooled buffer up to the specified number of bytes at a time.
+     * @param state the previous UTF-8 state, or 0 for the initial state
+     * @param inputStream the input stream
+     * @param handler the handler
+     * @param bufferSize the maximum number of bytes to read at once, which must be at least 4
+     * @param <X> the handler exception type
+     * @return the next UTF-8 state
+     * @throws IOException if the input stream threw this exception
+     * @throws X if the handler threw this exception
+     */
+    public static <X extends Exception> int nextState(int state, InputStream inputStream, Utf8ByteHandler<X> handler, int bufferSize) throws IOException, X {
+        return nextState(LOOP, state, inputStream, handler, bufferSize);
+    }
+
+    static <X extends Exception> int nextState(Utf8Engine engine, int state, InputStream inputStream, Utf8ByteHandler<X> handler, int bufferSize) throws IOException, X {
+        byte[] bytes = BufferPool.acquire(bufferSize);
         int n;
-        while ((n = inputStream.read(bytes, 0, BUFFER_SIZE)) != -1) {
-            state = nextState(state, bytes, 0, n, handler);
+        while ((n = inputStream.read(bytes, 0, bufferSize)) != -1) {
+            state = engine.nextState(state, bytes, 0, n, handler);
         }
-        buf.set(bytes);
+        BufferPool.release(bytes);
         return state;
     }
 
@@ -182,38 +448,240 @@ public class Utf8 {
         finish(nextState(0, is, handler), handler);
     }
 
-    public static Validity validity(InputStream is) throws IOException {
-        AtomicReference<byte[]> buf = Utf8.buf;
-        byte[] b = buf.get();
-        if (b == null || !buf.compareAndSet(b, null)) {
-            b = new byte[BUFFER_SIZE];
+    /**
+     * This method is semantically equivalent to {@link #transfer(InputStream, Utf8ByteHandler)},
+     * but reads into a pooled buffer up to the specified number of bytes at a time.
+     * @param is the input stream
+     * @param handler the handler
+     * @param bufferSize the maximum number of bytes to read at once, which must be at least 4
+     * @param <X> the handler exception type
+     * @throws IOException if the input stream threw this exception
+     * @throws X if the handler threw this exception
+     */
+    public static <X extends Exception> void transfer(InputStream is, Utf8ByteHandler<X> handler, int bufferSize) throws IOException, X {
+        finish(nextState(0, is, handler, bufferSize), handler);
+    }
+
+    /**
+     * Maps the specified file into memory, in windows of up to 256 MB, and transfers
+     * all of its bytes to the specified handler. The state machine is carried across window boundaries,
+     * and the final state is passed to {@link #finish(int, Utf8ByteHandler)}.
+     * @param path the path to a regular file, which may be larger than 2 GB
+     * @param handler the handler
+     * @param <X> the handler exception type
+     * @throws IOException if the file could not be read
+     * @throws X if the handler threw this exception
+     */
+    public static <X extends Exception> void transfer(Path path, Utf8ByteHandler<X> handler) throws IOException, X {
+        byte[] b = BufferPool.acquire(BUFFER_SIZE);
+        int state = 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            for (long pos = 0; pos < size; pos += MAP_SIZE) {
+                ByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(size - pos, MAP_SIZE));
+                //bulk copies into a cache-resident array beat per-byte gets from the mapping
+                for (int n; (n = Math.min(window.remaining(), b.length)) != 0; ) {
+                    window.get(b, 0, n);
+                    state = nextState(state, b, 0, n, handler);
+                }
+            }
+        }
+        BufferPool.release(b);
+        finish(state, handler);
+    }
+
+    /**
+     * Returns the validity of the specified file, which is mapped into memory in windows of up to 256 MB.
+     * @param path the path to a regular file, which may be larger than 2 GB
+     * @return the validity
+     * @throws IOException if the file could not be read
+     */
+    public static Validity validity(Path path) throws IOException {
+        byte[] b = BufferPool.acquire(BUFFER_SIZE);
+        ByteBuffer bb = ByteBuffer.wrap(b);
+        Validity v = Validity.ASCII;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            for (long pos = 0; pos < size && v != Validity.MALFORMED; pos += MAP_SIZE) {
+                v = validity(v, ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(size - pos, MAP_SIZE)), bb);
+            }
+        }
+        BufferPool.release(b);
+        return v;
+    }
+
+    /**
+     * Returns the validity of the specified file, exactly as {@link #validity(Path)} does, but splits the
+     * file at code point boundaries into chunks of about 16 MB which are validated in parallel.
+     * The chunks are validated in the {@link ForkJoinPool} of the calling thread, if it is a
+     * worker thread, or else in the {@link ForkJoinPool#commonPool() common pool}.
+     * @param path the path to a regular file, which may be larger than 2 GB
+     * @return the validity
+     * @throws IOException if the file could not be read
+     */
+    public static Validity parallelValidity(Path path) throws IOException {
+        return parallelValidity(path, PARALLEL_FILE_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the validity of the specified file, exactly as {@link #validity(Path)} does, but splits the
+     * file at code point boundaries into chunks which are validated in parallel.
+     * The chunks are validated in the {@link ForkJoinPool} of the calling thread, if it is a
+     * worker thread, or else in the {@link ForkJoinPool#commonPool() common pool}.
+     * @param path the path to a regular file, which may be larger than 2 GB
+     * @param chunkSize the number of bytes at or below which a chunk is validated sequentially
+     * @return the validity
+     * @throws IOException if the file could not be read
+     */
+    public static Validity parallelValidity(Path path, int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Parallel.FileValidity(ch, 0, ch.size(), chunkSize).invoke();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the validity of the specified mapped buffer's remaining bytes, which are bulk-copied into
+     * a pooled array to be validated.
+     */
+    static Validity mappedValidity(ByteBuffer window) {
+        byte[] b = BufferPool.acquire(BUFFER_SIZE);
+        Validity v = validity(Validity.ASCII, window, ByteBuffer.wrap(b));
+        BufferPool.release(b);
+        return v;
+    }
+
+    private static Validity validity(Validity v, ByteBuffer window, ByteBuffer bb) {
+        //bulk copies into a cache-resident array beat per-byte gets from the mapping
+        byte[] b = bb.array();
+        while (window.hasRemaining() && v != Validity.MALFORMED) {
+            int n = Math.min(window.remaining(), bb.remaining());
+            window.get(b, bb.position(), n);
+            bb.position(bb.position() + n);
+            v = validity(v, bb);
         }
+        return v;
+    }
+
+    public static Validity validity(InputStream is) throws IOException {
+        return validity(is, BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the validity of the specified input stream, exactly as {@link #validity(InputStream)} does,
+     * but reads into a pooled buffer up to the specified number of bytes at a time.
+     * @param is the input stream
+     * @param bufferSize the maximum number of bytes to read at once, which must be at least 4
+     * @return the validity
+     * @throws IOException if the input stream threw this exception
+     */
+    public static Validity validity(InputStream is, int bufferSize) throws IOException {
+        byte[] b = BufferPool.acquire(bufferSize);
         int n;
-        while ((n = is.read(b, 0, BUFFER_SIZE)) >= 0) {
-            for (int i = 0; i < n; i++) {
-                if (b[i] < 0) {
-                    for (Validity v = __.validity(b, i, n); v != Validity.MALFORMED; v = __.validity(b, 0, n)) {
-                        int r = 0;
-                        switch (v) {
-                            case UNDERFLOW_R3: b[r++] = b[n - 3];
-                            case UNDERFLOW_R2: b[r++] = b[n - 2];
-                            case UNDERFLOW_R1: b[r++] = b[n - 1];
-                        }
-                        if ((n = is.read(b, r, BUFFER_SIZE - r)) < 0) {
-                            buf.set(b);
-                            return v;
-                        }
-                        n += r;
+        while ((n = is.read(b, 0, bufferSize)) >= 0) {
+            int i = __.skipAscii(b, 0, n);
+            if (i != n) {
+                for (Validity v = __.validity(b, i, n); v != Validity.MALFORMED; v = __.validity(b, 0, n)) {
+                    int r = 0;
+                    switch (v) {
+                        case UNDERFLOW_R3: b[r++] = b[n - 3];
+                        case UNDERFLOW_R2: b[r++] = b[n - 2];
+                        case UNDERFLOW_R1: b[r++] = b[n - 1];
                     }
-                    buf.set(b);
-                    return Validity.MALFORMED;
+                    if ((n = is.read(b, r, bufferSize - r)) < 0) {
+                        BufferPool.release(b);
+                        return v;
+                    }
+                    n += r;
                 }
+                BufferPool.release(b);
+                return Validity.MALFORMED;
             }
         }
-        buf.set(b);
+        BufferPool.release(b);
         return Validity.ASCII;
     }
 
+    /**
+     * Returns the validity of the specified channel's remaining bytes. The channel is
+     * read until it reaches end-of-stream or until malformed input is encountered.
+     * @param ch the channel, which should be in blocking mode
+     * @return the validity
+     * @throws IOException if the channel threw this exception
+     */
+    public static Validity validity(ReadableByteChannel ch) throws IOException {
+        return validity(ch, BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the validity of the specified channel's remaining bytes, exactly as
+     * {@link #validity(ReadableByteChannel)} does, but reads into a pooled buffer up to the specified number
+     * of bytes at a time.
+     * @param ch the channel, which should be in blocking mode
+     * @param bufferSize the maximum number of bytes to read at once, which must be at least 4
+     * @return the validity
+     * @throws IOException if the channel threw this exception
+     */
+    public static Validity validity(ReadableByteChannel ch, int bufferSize) throws IOException {
+        byte[] b = BufferPool.acquire(bufferSize);
+        ByteBuffer bb = ByteBuffer.wrap(b, 0, bufferSize).slice();
+        Validity v = Validity.ASCII;
+        while (v != Validity.MALFORMED && ch.read(bb) >= 0) {
+            v = validity(v, bb);
+        }
+        BufferPool.release(b);
+        return v;
+    }
+
+    /**
+     * Validates the bytes between 0 and the position of the specified array-backed buffer,
+     * then compacts any truncated sequence to the front of the buffer to be validated again
+     * along with the next bytes.
+     * @param v the validity of all previous bytes
+     * @param bb the buffer
+     * @return the validity of all previous bytes, followed by the bytes in the buffer
+     */
+    private static Validity validity(Validity v, ByteBuffer bb) {
+        byte[] b = bb.array();
+        int n = bb.position();
+        int i = 0;
+        if (v == Validity.ASCII && (i = __.skipAscii(b, 0, n)) == n) {
+            bb.clear();
+            return v;
+        }
+        v = __.validity(b, i, n);
+        int r = 0;
+        switch (v) {
+            case UNDERFLOW_R3: r++;
+            case UNDERFLOW_R2: r++;
+            case UNDERFLOW_R1: r++;
+        }
+        bb.limit(n).position(n - r);
+        bb.compact();
+        return v;
+    }
+
+    /**
+     * Returns the validity of the specified buffer's remaining bytes, without copying them.
+     * The buffer's position is not modified.
+     * @param buf the heap or direct byte buffer
+     * @return the validity
+     */
+    public static Validity validity(ByteBuffer buf) {
+        int from = buf.position();
+        int to = buf.limit();
+        if (buf.hasArray()) {
+            int off = buf.arrayOffset();
+            return validity(buf.array(), off + from, off + to);
+        }
+        int i = __.skipAscii(buf, from, to);
+        return i == to ? Validity.ASCII : __.validity(buf, i, to);
+    }
+
     /**
      * Returns the validity of the specified byte array between the specified indexes
      * @param b the byte array
@@ -226,12 +694,522 @@ public class Utf8 {
             throw new IllegalArgumentException(from + " > " + to);
         }
 
-        for (int i = from; i < to; i++) {
-            if (b[i] < 0) {
-                return __.validity(b, i, to);
+        int i = __.skipAscii(b, from, to);
+        return i == to ? Validity.ASCII : __.validity(b, i, to);
+    }
+
+    /**
+     * Returns the number of valid code points in the specified byte array between the specified indexes, exactly as
+     * {@link Utf8Statistics#countCodePoints()} would after writing the same bytes and closing. Valid input is counted
+     * word-at-a-time without decoding; the state machine is only run if the bytes are malformed.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the number of valid code points
+     */
+    public static int countCodePoints(byte[] b, int from, int to) {
+        Validity v = checkedValidity(b, from, to);
+        switch (v) {
+            case ASCII:
+                return to - from;
+            case MALFORMED:
+                Utf8Statistics stats = new Utf8Statistics();
+                stats.write(b, from, to - from);
+                stats.close();
+                return (int)stats.countCodePoints();
+            default: //a truncated prefix is not a code point
+                return __.countChars(b, from, to, false) - (v == Validity.UNDERFLOW_R0 ? 0 : 1);
+        }
+    }
+
+    /**
+     * Returns the number of UTF-16 chars that the specified byte array between the specified indexes decodes to, i.e.,
+     * the length of the string built by {@link Utf8StringBuilder}, in which each malformed sequence is replaced with
+     * {@code U+FFFD}. Valid input is counted word-at-a-time without decoding; the state machine is only run if the
+     * bytes are malformed.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the number of UTF-16 chars
+     */
+    public static int utf16Length(byte[] b, int from, int to) {
+        Validity v = checkedValidity(b, from, to);
+        switch (v) {
+            case ASCII:
+                return to - from;
+            case UNDERFLOW_R0:
+                return __.countChars(b, from, to, true);
+            case MALFORMED:
+                Utf8Statistics stats = new Utf8Statistics();
+                stats.write(b, from, to - from);
+                stats.close();
+                return (int)(stats.countCodePoints() + stats.count4Byte() + stats.countInvalid());
+            default: //a truncated sequence is replaced with a single char
+                int n = __.countChars(b, from, to, true);
+                return b[to - (v.ordinal() - Validity.UNDERFLOW_R0.ordinal())] >= (byte)0xf0 ? n - 1 : n;
+        }
+    }
+
+    /**
+     * Decodes the specified byte array between the specified indexes into a string which always equals the string
+     * built by {@link Utf8StringBuilder}, in which each malformed sequence is replaced with {@code U+FFFD}.
+     * The bytes are validated first: valid input is then decoded by the JDK's (intrinsified) {@code String}
+     * constructor, whose replacement of malformed input differs, so only malformed input is decoded by the
+     * state machine.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the decoded string
+     */
+    public static String decodeToString(byte[] b, int from, int to) {
+        Validity v = checkedValidity(b, from, to);
+        switch (v) {
+            case ASCII:
+                return new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+            case UNDERFLOW_R0:
+                return new String(b, from, to - from, StandardCharsets.UTF_8);
+            case MALFORMED:
+                Utf8StringBuilder sb = new Utf8StringBuilder();
+                sb.write(b, from, to - from);
+                sb.close();
+                return sb.toString();
+            default: //a truncated sequence is replaced with a single char
+                int r = v.ordinal() - Validity.UNDERFLOW_R0.ordinal();
+                return new String(b, from, to - from - r, StandardCharsets.UTF_8).concat("\uFFFD");
+        }
+    }
+
+    /**
+     * Returns a stream of the code points in the specified byte array between the specified indexes, in which
+     * each malformed sequence is replaced with {@code U+FFFD}, exactly as {@link Utf8Handler#handleError()}
+     * would be called for it. The bytes are decoded lazily, without building a string. When the stream is
+     * parallel, the range is split at code point boundaries, so that it decodes to the same code points.
+     * If the range is all ASCII, the stream is sized exactly.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the stream of code points
+     */
+    public static IntStream codePoints(byte[] b, int from, int to) {
+        checkBounds(b, from, to);
+        return StreamSupport.intStream(new CodePointSpliterator(b, from, to, __.skipAscii(b, from, to)), false);
+    }
+
+    /**
+     * Returns the index of the first malformed sequence in the specified byte array between the specified indexes,
+     * i.e., of the first byte for which {@link Utf8ByteHandler} reports an error, where a truncated sequence at
+     * the end is malformed. The bytes are validated in chunks, and only the first malformed chunk is decoded,
+     * so the index is found at nearly the speed of {@link #validity(byte[], int, int)}.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the index of the first malformed byte, or -1 if the bytes are valid
+     */
+    public static int firstMalformedIndex(byte[] b, int from, int to) {
+        checkBounds(b, from, to);
+        int i = __.firstMalformed(b, from, to);
+        return i == to ? -1 : i;
+    }
+
+    /**
+     * Returns the malformed sequences in the specified byte array between the specified indexes as consecutive
+     * (index, length) pairs, one for each error that {@link Utf8ByteHandler} reports, and thus for each
+     * {@code U+FFFD} in the string built by {@link Utf8StringBuilder}. A sequence which is reported as a single
+     * error includes the continuation byte which is ignored after a surrogate prefix, and a truncated sequence
+     * at the end is malformed. Valid runs between malformed sequences are skipped at the speed of
+     * {@link #firstMalformedIndex(byte[], int, int)}.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the (index, length) pairs, which are empty if the bytes are valid
+     */
+    public static int[] malformedRanges(byte[] b, int from, int to) {
+        checkBounds(b, from, to);
+        return rangesFrom(b, __.firstMalformed(b, from, to), to);
+    }
+
+    /**
+     * Returns the malformed ranges between the specified indexes, the first of which starts at {@code i}
+     * unless {@code i == to}
+     */
+    private static int[] rangesFrom(byte[] b, int i, int to) {
+        int[] ranges = new int[0];
+        int n = 0;
+        for (; i != to; i = __.firstMalformed(b, i, to)) {
+            int len = __.malformedLength(b, i, to);
+            if (n == ranges.length) {
+                ranges = Arrays.copyOf(ranges, Math.max(8, n << 1));
             }
+            ranges[n++] = i;
+            ranges[n++] = len;
+            i += len;
         }
-        return Validity.ASCII;
+        return n == ranges.length ? ranges : Arrays.copyOf(ranges, n);
+    }
+
+    /**
+     * Returns the specified bytes with each malformed sequence replaced with the UTF-8 encoding of {@code U+FFFD},
+     * exactly as {@link Utf8Handler#handleError()} would be called for it, so that the result decodes to the same
+     * string as the bytes do with {@link Utf8StringBuilder}. Valid bytes are not decoded: they are validated at
+     * the speed of {@link #firstMalformedIndex(byte[], int, int)} and copied as-is. If the bytes between the
+     * specified indexes are valid and span the whole array, the array itself is returned.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the valid UTF-8 bytes
+     */
+    public static byte[] sanitize(byte[] b, int from, int to) {
+        checkBounds(b, from, to);
+        int i = __.firstMalformed(b, from, to);
+        if (i == to) {
+            return from == 0 && to == b.length ? b : Arrays.copyOfRange(b, from, to);
+        }
+        int[] ranges = rangesFrom(b, i, to);
+        byte[] dst = new byte[sanitizedLength(from, to, ranges)];
+        int j = 0;
+        for (int k = 0; k < ranges.length; k += 2) {
+            int n = ranges[k] - from;
+            System.arraycopy(b, from, dst, j, n);
+            j += n;
+            dst[j++] = (byte)0xef;
+            dst[j++] = (byte)0xbf;
+            dst[j++] = (byte)0xbd;
+            from = ranges[k] + ranges[k + 1];
+        }
+        System.arraycopy(b, from, dst, j, to - from);
+        return dst;
+    }
+
+    /**
+     * Puts the specified bytes into the specified buffer, with each malformed sequence replaced with the UTF-8
+     * encoding of {@code U+FFFD}, exactly as {@link #sanitize(byte[], int, int)} returns them.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param dst the buffer, whose position is advanced past the valid UTF-8 bytes
+     * @throws BufferOverflowException if the buffer has insufficient space, in which case
+     * its position is not modified
+     */
+    public static void sanitize(byte[] b, int from, int to, ByteBuffer dst) {
+        checkBounds(b, from, to);
+        int i = __.firstMalformed(b, from, to);
+        if (i == to) {
+            dst.put(b, from, to - from);
+            return;
+        }
+        int[] ranges = rangesFrom(b, i, to);
+        if (dst.remaining() < sanitizedLength(from, to, ranges)) {
+            throw new BufferOverflowException();
+        }
+        for (int k = 0; k < ranges.length; k += 2) {
+            dst.put(b, from, ranges[k] - from).put((byte)0xef).put((byte)0xbf).put((byte)0xbd);
+            from = ranges[k] + ranges[k + 1];
+        }
+        dst.put(b, from, to - from);
+    }
+
+    /**
+     * Writes the specified bytes to the specified output stream, with each malformed sequence replaced with the
+     * UTF-8 encoding of {@code U+FFFD}, exactly as {@link #sanitize(byte[], int, int)} returns them. Valid bytes
+     * are written in a single call.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param out the output stream
+     * @throws IOException if the output stream threw this exception
+     */
+    public static void sanitize(byte[] b, int from, int to, OutputStream out) throws IOException {
+        checkBounds(b, from, to);
+        for (int i = __.firstMalformed(b, from, to); i != to; i = __.firstMalformed(b, i, to)) {
+            out.write(b, from, i - from);
+            out.write(0xef);
+            out.write(0xbf);
+            out.write(0xbd);
+            i += __.malformedLength(b, i, to);
+            from = i;
+        }
+        out.write(b, from, to - from);
+    }
+
+    private static int sanitizedLength(int from, int to, int[] ranges) {
+        long n = to - from;
+        for (int k = 1; k < ranges.length; k += 2) {
+            n += 3 - ranges[k];
+        }
+        if (n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("sanitized length overflows int: " + n);
+        }
+        return (int)n;
+    }
+
+    /**
+     * Returns the offset of the first malformed sequence in the specified input stream, exactly as
+     * {@link #firstMalformedIndex(byte[], int, int)} would return it for all of the stream's bytes.
+     * The stream is read until it reaches end-of-stream or until malformed input is encountered.
+     * @param is the input stream
+     * @return the offset from the current position of the stream, or -1 if the stream is valid
+     * @throws IOException if the input stream threw this exception
+     */
+    public static long firstMalformedIndex(InputStream is) throws IOException {
+        long[] ranges = malformedRanges(is, true);
+        return ranges.length == 0 ? -1 : ranges[0];
+    }
+
+    /**
+     * Returns the malformed sequences in the specified input stream as consecutive (offset, length) pairs,
+     * exactly as {@link #malformedRanges(byte[], int, int)} would return them for all of the stream's bytes.
+     * @param is the input stream
+     * @return the (offset, length) pairs, whose offsets are from the current position of the stream
+     * @throws IOException if the input stream threw this exception
+     */
+    public static long[] malformedRanges(InputStream is) throws IOException {
+        return malformedRanges(is, false);
+    }
+
+    private static long[] malformedRanges(InputStream is, boolean firstOnly) throws IOException {
+        byte[] b = BufferPool.acquire(BUFFER_SIZE);
+        long[] ranges = new long[0];
+        int count = 0;
+        long position = 0;
+        int n = 0;
+        for (;;) {
+            int r = is.read(b, n, BUFFER_SIZE - n);
+            if (r > 0) {
+                n += r;
+            }
+            //a sequence which may be completed by the next bytes is carried over to be scanned with them
+            int to = r < 0 ? n : incompleteTail(b, n);
+            for (int i = __.firstMalformed(b, 0, to); i != to; i = __.firstMalformed(b, i, to)) {
+                int len = __.malformedLength(b, i, to);
+                if (count == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, Math.max(8, count << 1));
+                }
+                ranges[count++] = position + i;
+                ranges[count++] = len;
+                if (firstOnly) {
+                    BufferPool.release(b);
+                    return Arrays.copyOf(ranges, 2);
+                }
+                i += len;
+            }
+            if (r < 0) {
+                BufferPool.release(b);
+                return count == ranges.length ? ranges : Arrays.copyOf(ranges, count);
+            }
+            System.arraycopy(b, to, b, 0, n - to);
+            position += to;
+            n -= to;
+        }
+    }
+
+    /**
+     * Returns the index of the last sequence before {@code to} if it is shorter than its prefix byte requires,
+     * or else {@code to}
+     */
+    private static int incompleteTail(byte[] b, int to) {
+        for (int i = to - 1, end = Math.max(0, to - 3); i >= end; i--) {
+            int b1 = b[i];
+            if (b1 > (byte)0xbf) { //a non-continuation byte
+                int required = b1 >= 0 ? 1 : b1 < (byte)0xe0 ? 2 : b1 < (byte)0xf0 ? 3 : 4;
+                return to - i < required ? i : to;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Validates each row of a column of strings which are stored as UTF-8 bytes, one after another, in a single
+     * byte array, e.g., as in Apache Arrow's variable-size binary layout.
+     * @param data the bytes of all rows
+     * @param offsets the start index of each row, followed by the end index of the last row
+     * @param rows the number of rows
+     * @return the validity bitmap, in which bit {@code i & 63} of word {@code i >>> 6} is set if row {@code i} is
+     * valid, i.e., if its validity is {@link Validity#isFullyValid() fully valid}
+     * @see #validateColumn(byte[], int[], int, int[])
+     */
+    public static long[] validateColumn(byte[] data, int[] offsets, int rows) {
+        return validateColumn(data, offsets, rows, null);
+    }
+
+    /**
+     * Validates each row of a column of strings, exactly as {@link #validateColumn(byte[], int[], int)} does, and
+     * stores the number of valid code points in each row, exactly as {@link #countCodePoints(byte[], int, int)}
+     * would return it, in the specified array, unless it is null. Rows are validated together in chunks of a few KB,
+     * with the speed of {@link #vectorValidity(byte[], int, int)}; a chunk is only validated row by row if it is not
+     * valid as a whole, or if a row in it starts with a continuation byte. Rows are then validated 4 at a time by a
+     * table-driven DFA, so that the latency of each row's state transitions overlaps with that of the others.
+     * @param data the bytes of all rows
+     * @param offsets the start index of each row, followed by the end index of the last row
+     * @param rows the number of rows
+     * @param codePoints the array in which to store the number of code points in each row, or null
+     * @return the validity bitmap, in which bit {@code i & 63} of word {@code i >>> 6} is set if row {@code i} is
+     * valid
+     * @throws IllegalArgumentException if {@code rows} is negative, or the offsets decrease
+     */
+    public static long[] validateColumn(byte[] data, int[] offsets, int rows, int[] codePoints) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows: " + rows);
+        }
+        for (int i = 0; i < rows; i++) {
+            if (offsets[i] > offsets[i + 1]) {
+                throw new IllegalArgumentException(offsets[i] + " > " + offsets[i + 1]);
+            }
+        }
+        checkBounds(data, offsets[0], offsets[rows]);
+        if (codePoints != null && codePoints.length < rows) {
+            throw new ArrayIndexOutOfBoundsException(rows - 1);
+        }
+        long[] bitmap = new long[rows + 63 >>> 6];
+        Column.validate(data, offsets, rows, bitmap, codePoints);
+        return bitmap;
+    }
+
+    private static Validity checkedValidity(byte[] b, int from, int to) {
+        checkBounds(b, from, to);
+        return __.vectorValidity(b, from, to);
+    }
+
+    private static void checkBounds(byte[] b, int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (from < 0 || to > b.length) {
+            throw new ArrayIndexOutOfBoundsException(from < 0 ? from : to);
+        }
+    }
+
+    /**
+     * Returns the validity of the specified byte array between the specified indexes, exactly as
+     * {@link #validity(byte[], int, int)} does, but splits the range at code point boundaries
+     * into chunks of about 1 MB which are validated in parallel.
+     * The chunks are validated in the {@link ForkJoinPool} of the calling thread, if it is a
+     * worker thread, or else in the {@link ForkJoinPool#commonPool() common pool}.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the validity
+     */
+    public static Validity parallelValidity(byte[] b, int from, int to) {
+        return parallelValidity(b, from, to, PARALLEL_ARRAY_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the validity of the specified byte array between the specified indexes, exactly as
+     * {@link #validity(byte[], int, int)} does, but splits the range at code point boundaries
+     * into chunks which are validated in parallel.
+     * The chunks are validated in the {@link ForkJoinPool} of the calling thread, if it is a
+     * worker thread, or else in the {@link ForkJoinPool#commonPool() common pool}.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param chunkSize the number of bytes at or below which a chunk is validated sequentially
+     * @return the validity
+     */
+    public static Validity parallelValidity(byte[] b, int from, int to, int chunkSize) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        }
+        if (from < 0 || to > b.length) {
+            throw new ArrayIndexOutOfBoundsException(from < 0 ? from : to);
+        }
+        return to - from <= chunkSize ? __.vectorValidity(b, from, to)
+                : new Parallel.ArrayValidity(b, from, to, chunkSize).invoke();
+    }
+
+    /**
+     * Returns the validity of the specified byte array between the specified indexes, exactly as
+     * {@link #validity(byte[], int, int)} does, but validates many bytes at once with the
+     * {@code jdk.incubator.vector} API when it is available, i.e., when running on Java 17+
+     * with {@code --add-modules jdk.incubator.vector}. Otherwise, this method falls back to
+     * {@link #validity(byte[], int, int)}.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the validity
+     * @see #isVectorized()
+     */
+    public static Validity vectorValidity(byte[] b, int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        return __.vectorValidity(b, from, to);
+    }
+
+    /**
+     * Tests if {@link #vectorValidity(byte[], int, int)} is backed by the {@code jdk.incubator.vector} API
+     * @return true if the {@code jdk.incubator.vector} module is available in this JVM
+     */
+    public static boolean isVectorized() {
+        return __.isVectorized();
+    }
+
+    /**
+     * Returns an engine whose decoding loop is a copy of the loop behind
+     * {@link #nextState(int, byte[], int, int, Utf8ByteHandler)}, reserved for handlers of the specified class.
+     * When handlers of several classes share one loop, its calls to the handler are megamorphic, so the JIT compiler
+     * cannot inline them; a loop which only ever sees one handler class can inline them all. The engine is created
+     * once per handler class, and may be stored in a static final field, e.g.:
+     * <pre>{@code
+     * private static final Utf8Engine ENGINE = Utf8.specialize(MyHandler.class);
+     * ...
+     * Utf8.finish(ENGINE.nextState(0, bytes, 0, bytes.length, handler), handler);
+     * }</pre>
+     * An engine accepts handlers of any class, but a loop which is passed handlers of other classes is no longer
+     * specialized.
+     * <p>Only the loop is copied, not the handler's methods. The handler events which the specified class inherits
+     * from interface default methods (e.g., the defaults of {@link Utf8Handler}, which call
+     * {@link Utf8Handler#handleCodePoint(int)}, or {@link Utf8ByteHandler#handleAsciiRun(byte[], int, int)}, which
+     * calls {@link Utf8ByteHandler#handle1ByteCodePoint(int)}) are shared with every other implementing class, so
+     * the type profiles of the calls made from their bodies stay megamorphic. Those calls are only inlined when the
+     * JIT compiler inlines the default method itself into the copy, and can thus infer the receiver's class;
+     * when it does not (e.g., once its inlining budget is exhausted), they remain virtual. Specializing is therefore
+     * only guaranteed to pay off for classes which override every method of {@link Utf8ByteHandler}, such as
+     * {@link Utf8Statistics}.
+     * <p>Before Java 15, which introduced hidden classes, every engine shares the loop behind
+     * {@link #nextState(int, byte[], int, int, Utf8ByteHandler)}.
+     * @param handlerClass the class of the handlers which the engine will be passed
+     * @return the engine for the specified class
+     * @see #isSpecializing()
+     */
+    @SuppressWarnings("rawtypes")
+    public static Utf8Engine specialize(Class<? extends Utf8ByteHandler> handlerClass) {
+        return __.specialize(handlerClass);
+    }
+
+    /**
+     * Returns an engine which decodes with a table-driven DFA rather than with the branches of
+     * {@link #nextState(int, byte[], int, int, Utf8ByteHandler)}. Its handler events, states and validities are
+     * identical; only the speed differs. The branches are fastest on ASCII and mostly-valid text, whereas the DFA
+     * does not mispredict on mixed or invalid text, so the engine may be chosen per call to suit the input.
+     * @return the DFA engine
+     */
+    public static Utf8Engine dfa() {
+        return DFA;
+    }
+
+    /**
+     * Tests if {@link #specialize(Class)} returns engines with separate copies of the decoding loop
+     * @return true if this JVM supports hidden classes
+     */
+    public static boolean isSpecializing() {
+        return __.isSpecializing();
+    }
+
+    /**
+     * Returns the number of leading ASCII bytes in the specified byte array between the specified indexes
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the number of bytes, starting at {@code from}, in the range 0-0x7F
+     */
+    public static int asciiPrefixLength(byte[] b, int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        return __.skipAscii(b, from, to) - from;
     }
 
     /**
@@ -22,6 +22,24 @@ public interface Utf8ByteHandler<X extends Exception> {
      */
     void handle1ByteCodePoint(int b1) throws X;
 
+    /**
+     * Called when a run of valid 1-byte sequences is encountered, in place of calling
+     * {@link #handle1ByteCodePoint(int)} for each byte of the run. The default implementation does exactly that;
+     * implementations may override it to handle the whole run at once. A class which overrides
+     * {@link #handle1ByteCodePoint(int)} must therefore also override this method, or else inherit the default,
+     * since an inherited bulk implementation need not call {@link #handle1ByteCodePoint(int)}.
+     * ({@link Utf8Statistics} and {@link Utf8StringBuilder} detect subclasses which don't, once per instance, and
+     * pass such runs byte by byte.)
+     * @param b the byte array containing the run, which must not be modified
+     * @param from the index of the first ASCII character in the run
+     * @param to the end index of the run, exclusive; all bytes in between are in the range 0-0x7F
+     */
+    default void handleAsciiRun(byte[] b, int from, int to) throws X {
+        for (int i = from; i < to; i++) {
+            handle1ByteCodePoint(b[i]);
+        }
+    }
+
     /**
      * Called when a valid 2-byte sequence is encountered.
      * @param b1 the prefix byte, in the range (byte)0xC2-(byte)0xDF
@@ -0,0 +1,289 @@
+package org.rypt.f8;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A UTF-8 {@link Charset} whose decoder follows the f8 state machine: each malformed sequence is reported
+ * with exactly the length of the sequence which {@link Utf8ByteHandler} reports as a single error, so that
+ * decoding with the default replacement produces the same string as {@link Utf8StringBuilder}.
+ * This charset is available as {@code Charset.forName("X-F8-UTF-8")} through {@link Utf8CharsetProvider}.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public final class Utf8Charset extends Charset {
+
+    /**
+     * The canonical name of this charset
+     */
+    public static final String NAME = "X-F8-UTF-8";
+
+    /**
+     * The sole instance of this charset
+     */
+    public static final Utf8Charset INSTANCE = new Utf8Charset();
+
+    private Utf8Charset() {
+        super(NAME, null);
+    }
+
+    @Override
+    public boolean contains(Charset cs) {
+        return cs == this || StandardCharsets.UTF_8.contains(cs);
+    }
+
+    @Override
+    public CharsetDecoder newDecoder() {
+        return new Decoder(this);
+    }
+
+    @Override
+    public CharsetEncoder newEncoder() {
+        return new Encoder(this);
+    }
+
+    private static final class Decoder extends CharsetDecoder {
+
+        Decoder(Charset cs) {
+            super(cs, 1f, 1f);
+        }
+
+        @Override
+        protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+            if (in.hasArray() && out.hasArray()) {
+                return decodeArrayLoop(in, out);
+            }
+            return decodeBufferLoop(in, out);
+        }
+
+        private static CoderResult decodeArrayLoop(ByteBuffer in, CharBuffer out) {
+            byte[] b = in.array();
+            int off = in.arrayOffset() + in.position();
+            int to = in.arrayOffset() + in.limit();
+            char[] c = out.array();
+            int j = out.arrayOffset() + out.position();
+            int end = out.arrayOffset() + out.limit();
+            CoderResult result = CoderResult.UNDERFLOW;
+            while (off < to) {
+                int b1 = b[off];
+                if (b1 >= 0) { //0xxxxxxx
+                    int lim = __.skipAscii(b, off, off + Math.min(to - off, end - j));
+                    if (lim == off) {
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                    while (off < lim) {
+                        c[j++] = (char)b[off++];
+                    }
+                    continue;
+                }
+                if (end - j >= 2) { //fast path for whole valid sequences
+                    if (b1 < (byte)0xe0) {
+                        int b2;
+                        if (b1 >= (byte)0xc2 && off + 1 < to && (b2 = b[off + 1]) <= (byte)0xbf) { //110xxxxx 10xxxxxx
+                            c[j++] = (char)Utf8.codePoint(b1, b2);
+                            off += 2;
+                            continue;
+                        }
+                    } else if (b1 < (byte)0xf0) {
+                        if (off + 2 < to) { //1110xxxx 10xxxxxx 10xxxxxx
+                            int b2 = b[off + 1];
+                            int b3 = b[off + 2];
+                            if (((b1+1^1) + (b2|~0xe0) & 0xee) << 24 < 0xae000000 & b3 <= (byte)0xbf) {
+                                c[j++] = (char)Utf8.codePoint(b1, b2, b3);
+                                off += 3;
+                                continue;
+                            }
+                        }
+                    } else if (b1 <= (byte)0xf4 && off + 3 < to) { //11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+                        int b2 = b[off + 1];
+                        int b3 = b[off + 2];
+                        int b4 = b[off + 3];
+                        if (b2 <= (byte)0xbf & (b1 << 28) + 0x70 + b2 >> 30 == 0
+                                & b3 <= (byte)0xbf & b4 <= (byte)0xbf) {
+                            int cp = Utf8.codePoint(b1, b2, b3, b4);
+                            c[j++] = Character.highSurrogate(cp);
+                            c[j++] = Character.lowSurrogate(cp);
+                            off += 4;
+                            continue;
+                        }
+                    }
+                }
+                int n = sequenceLength(b1, off + 1 < to ? b[off + 1] : 0, off + 2 < to ? b[off + 2] : 0,
+                        off + 3 < to ? b[off + 3] : 0, to - off);
+                if (n <= 0) {
+                    if (n != 0) {
+                        result = CoderResult.malformedForLength(-n);
+                    }
+                    break;
+                } else if (n == 4) {
+                    if (end - j < 2) {
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                    int cp = Utf8.codePoint(b1, b[off + 1], b[off + 2], b[off + 3]);
+                    c[j++] = Character.highSurrogate(cp);
+                    c[j++] = Character.lowSurrogate(cp);
+                } else if (j == end) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                } else if (n == 3) {
+                    c[j++] = (char)Utf8.codePoint(b1, b[off + 1], b[off + 2]);
+                } else {
+                    c[j++] = (char)Utf8.codePoint(b1, b[off + 1]);
+                }
+                off += n;
+            }
+            in.position(off - in.arrayOffset());
+            out.position(j - out.arrayOffset());
+            return result;
+        }
+
+        private static CoderResult decodeBufferLoop(ByteBuffer in, CharBuffer out) {
+            int off = in.position();
+            int to = in.limit();
+            CoderResult result = CoderResult.UNDERFLOW;
+            while (off < to) {
+                int b1 = in.get(off);
+                if (b1 >= 0) { //0xxxxxxx
+                    if (!out.hasRemaining()) {
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                    out.put((char)b1);
+                    off++;
+                    continue;
+                }
+                int n = sequenceLength(b1, off + 1 < to ? in.get(off + 1) : 0, off + 2 < to ? in.get(off + 2) : 0,
+                        off + 3 < to ? in.get(off + 3) : 0, to - off);
+                if (n <= 0) {
+                    if (n != 0) {
+                        result = CoderResult.malformedForLength(-n);
+                    }
+                    break;
+                } else if (n == 4) {
+                    if (out.remaining() < 2) {
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                    int cp = Utf8.codePoint(b1, in.get(off + 1), in.get(off + 2), in.get(off + 3));
+                    out.put(Character.highSurrogate(cp));
+                    out.put(Character.lowSurrogate(cp));
+                } else if (!out.hasRemaining()) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                } else if (n == 3) {
+                    out.put((char)Utf8.codePoint(b1, in.get(off + 1), in.get(off + 2)));
+                } else {
+                    out.put((char)Utf8.codePoint(b1, in.get(off + 1)));
+                }
+                off += n;
+            }
+            in.position(off);
+            return result;
+        }
+    }
+
+    /**
+     * Returns the length of the valid multi-byte sequence starting with the specified prefix byte; otherwise,
+     * the negated length of the malformed sequence which {@link Utf8ByteHandler} would report as a single
+     * error, or 0 if more bytes are needed to tell. Bytes at or beyond {@code available} are ignored.
+     */
+    static int sequenceLength(int b1, int b2, int b3, int b4, int available) {
+        if (b1 < (byte)0xc2 || b1 > (byte)0xf4) {
+            return -1; //prefix error
+        } else if (available < 2) {
+            return 0;
+        } else if (b2 > (byte)0xbf) {
+            return -1; //continuation error of 1
+        } else if (b1 < (byte)0xe0) {
+            return 2;
+        } else if (b1 < (byte)0xf0) {
+            if (b1 == (byte)0xe0 && b2 < (byte)0xa0) {
+                return -1; //continuation error of 1, then a prefix error
+            } else if (b1 == (byte)0xed && b2 >= (byte)0xa0) {
+                //surrogate: a continuation error of 1, after which the next continuation byte is ignored
+                return available < 3 ? 0 : b3 > (byte)0xbf ? -2 : -3;
+            } else if (available < 3) {
+                return 0;
+            }
+            return b3 > (byte)0xbf ? -2 : 3;
+        } else if ((b1 << 28) + 0x70 + b2 >> 30 != 0) {
+            return -1; //continuation error of 1, then a prefix error
+        } else if (available < 3) {
+            return 0;
+        } else if (b3 > (byte)0xbf) {
+            return -2;
+        } else if (available < 4) {
+            return 0;
+        }
+        return b4 > (byte)0xbf ? -3 : 4;
+    }
+
+    private static final class Encoder extends CharsetEncoder {
+
+        Encoder(Charset cs) {
+            super(cs, 1.1f, 3f);
+        }
+
+        @Override
+        public boolean canEncode(char c) {
+            return !Character.isSurrogate(c);
+        }
+
+        @Override
+        protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+            int mark = in.position();
+            try {
+                while (in.hasRemaining()) {
+                    char c = in.get();
+                    if (c < 0x80) {
+                        if (!out.hasRemaining()) {
+                            return CoderResult.OVERFLOW;
+                        }
+                        out.put((byte)c);
+                    } else if (c < 0x800) {
+                        if (out.remaining() < 2) {
+                            return CoderResult.OVERFLOW;
+                        }
+                        out.put((byte)(0xc0 | c >> 6));
+                        out.put((byte)(0x80 | c & 0x3f));
+                    } else if (!Character.isSurrogate(c)) {
+                        if (out.remaining() < 3) {
+                            return CoderResult.OVERFLOW;
+                        }
+                        out.put((byte)(0xe0 | c >> 12));
+                        out.put((byte)(0x80 | c >> 6 & 0x3f));
+                        out.put((byte)(0x80 | c & 0x3f));
+                    } else if (Character.isLowSurrogate(c)) {
+                        return CoderResult.malformedForLength(1);
+                    } else if (!in.hasRemaining()) {
+                        return CoderResult.UNDERFLOW;
+                    } else {
+                        char d = in.get();
+                        if (!Character.isLowSurrogate(d)) {
+                            return CoderResult.malformedForLength(1);
+                        }
+                        if (out.remaining() < 4) {
+                            return CoderResult.OVERFLOW;
+                        }
+                        int cp = Character.toCodePoint(c, d);
+                        out.put((byte)(0xf0 | cp >> 18));
+                        out.put((byte)(0x80 | cp >> 12 & 0x3f));
+                        out.put((byte)(0x80 | cp >> 6 & 0x3f));
+                        out.put((byte)(0x80 | cp & 0x3f));
+                    }
+                    mark = in.position();
+                }
+                return CoderResult.UNDERFLOW;
+            } finally {
+                in.position(mark);
+            }
+        }
+    }
+}
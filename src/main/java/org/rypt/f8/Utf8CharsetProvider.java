@@ -0,0 +1,24 @@
+package org.rypt.f8;
+
+import java.nio.charset.Charset;
+import java.nio.charset.spi.CharsetProvider;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Provides {@link Utf8Charset} as {@code Charset.forName("X-F8-UTF-8")} when this library is on the class path.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public class Utf8CharsetProvider extends CharsetProvider {
+
+    @Override
+    public Iterator<Charset> charsets() {
+        return Collections.<Charset>singleton(Utf8Charset.INSTANCE).iterator();
+    }
+
+    @Override
+    public Charset charsetForName(String charsetName) {
+        return Utf8Charset.NAME.equalsIgnoreCase(charsetName) ? Utf8Charset.INSTANCE : null;
+    }
+}
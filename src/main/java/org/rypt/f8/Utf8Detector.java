@@ -0,0 +1,126 @@
+package org.rypt.f8;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Detects whether a byte stream looks like UTF-8, by the same criterion as {@link Utf8Statistics#looksLikeUtf8()},
+ * but stops examining bytes as soon as the answer is settled by enough evidence: i.e., once the number of
+ * multi-byte sequences plus the number of errors reaches a threshold. Plain ASCII is no evidence either way, so
+ * a limit on the number of bytes examined may also be set.
+ * <p>
+ * For example, with the default threshold of {@value #DEFAULT_THRESHOLD}, detection stops as soon as the
+ * multi-byte sequences and errors seen number 64, at which point the bytes look like UTF-8 if there were at most
+ * 5 errors, and do not if there were 6 or more.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public class Utf8Detector {
+
+    /**
+     * The default number of multi-byte sequences and errors after which detection stops
+     */
+    public static final int DEFAULT_THRESHOLD = 64;
+
+    //bytes are examined in slices of this size, so that detection stops soon after the threshold is met
+    private static final int SLICE = 1024;
+
+    private final Utf8Statistics stats = new Utf8Statistics();
+    private final long threshold;
+    private final long limit;
+    private long examined;
+
+    /**
+     * Creates a detector with the default threshold and no limit
+     */
+    public Utf8Detector() {
+        this(DEFAULT_THRESHOLD, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a detector which stops once the number of multi-byte sequences plus the number of errors
+     * reaches the specified threshold, or else once it has examined the specified number of bytes
+     * @param threshold the number of multi-byte sequences and errors which settles the answer
+     * @param limit the maximum number of bytes to examine
+     * @throws IllegalArgumentException if the threshold or limit is not positive
+     */
+    public Utf8Detector(int threshold, long limit) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold: " + threshold);
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit: " + limit);
+        }
+        this.threshold = threshold;
+        this.limit = limit;
+    }
+
+    /**
+     * Examines the specified bytes, unless detection is already done, in which case they are ignored.
+     * Detection may stop partway through the bytes.
+     * @param b the byte array
+     * @param off the start index
+     * @param len the number of bytes
+     * @return true if detection is done
+     */
+    public boolean update(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int end = off + len; off < end && !isDone(); ) {
+            int n = (int)Math.min(Math.min(end - off, SLICE), limit - examined);
+            stats.write(b, off, n);
+            examined += n;
+            off += n;
+        }
+        return isDone();
+    }
+
+    /**
+     * Examines bytes from the specified input stream until detection is done or the stream reaches end-of-stream.
+     * Since the stream is read in chunks, up to one chunk of bytes beyond {@link #bytesExamined()} may be read.
+     * @param is the input stream
+     * @return true if the bytes look like UTF-8
+     * @throws IOException if the input stream threw this exception
+     */
+    public boolean detect(InputStream is) throws IOException {
+        byte[] b = BufferPool.acquire(Utf8.BUFFER_SIZE);
+        int n;
+        while (!isDone() && (n = is.read(b, 0, (int)Math.min(Utf8.BUFFER_SIZE, limit - examined))) >= 0) {
+            update(b, 0, n);
+        }
+        BufferPool.release(b);
+        return looksLikeUtf8();
+    }
+
+    /**
+     * Returns true if the threshold has been met, or the limit has been reached
+     * @return true if detection is done
+     */
+    public boolean isDone() {
+        return examined >= limit || stats.count2Byte() + stats.count3Byte() + stats.count4Byte()
+                + stats.countInvalidIgnoringTruncation() >= threshold;
+    }
+
+    /**
+     * Returns true if the bytes examined so far look like UTF-8, as defined by {@link Utf8Statistics#looksLikeUtf8()}
+     * @return true if the bytes examined so far look like UTF-8
+     */
+    public boolean looksLikeUtf8() {
+        return stats.looksLikeUtf8();
+    }
+
+    /**
+     * @return the number of bytes examined so far
+     */
+    public long bytesExamined() {
+        return examined;
+    }
+
+    /**
+     * @return the statistics of the bytes examined so far
+     */
+    public Utf8Statistics statistics() {
+        return stats;
+    }
+}
@@ -0,0 +1,87 @@
+package org.rypt.f8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A UTF-8 decoding loop, which transfers bytes to a handler exactly as the corresponding methods of {@link Utf8} do.
+ * Each engine returned by {@link Utf8#specialize(Class)} runs its own copy of the loop, whose calls to the handler
+ * are profiled, and inlined by the JIT compiler, separately from those of every other copy; the engine returned by
+ * {@link Utf8#dfa()} runs a table-driven loop instead.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public interface Utf8Engine {
+
+    /**
+     * Transfers the specified bytes to the specified handler, starting from the specified state
+     * @param state the previous UTF-8 state returned from this function, or 0 for the initial state
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param handler the handler
+     * @param <X> the handler exception type
+     * @return the next UTF-8 state
+     * @throws X if the handler threw this exception
+     * @see Utf8#nextState(int, byte[], int, int, Utf8ByteHandler)
+     */
+    <X extends Exception> int nextState(int state, byte[] b, int from, int to, Utf8ByteHandler<X> handler) throws X;
+
+    /**
+     * Transfers the remaining bytes in the specified buffer to the specified handler, starting from the specified
+     * state. Upon return, the buffer's position will equal its limit.
+     * @param state the previous UTF-8 state returned from this function, or 0 for the initial state
+     * @param buf the heap or direct byte buffer
+     * @param handler the handler
+     * @param <X> the handler exception type
+     * @return the next UTF-8 state
+     * @throws X if the handler threw this exception
+     * @see Utf8#nextState(int, ByteBuffer, Utf8ByteHandler)
+     */
+    <X extends Exception> int nextState(int state, ByteBuffer buf, Utf8ByteHandler<X> handler) throws X;
+
+    /**
+     * Transfers all bytes of the specified input stream to the specified handler, starting from the specified state
+     * @param state the previous UTF-8 state, or 0 for the initial state
+     * @param is the input stream
+     * @param handler the handler
+     * @param <X> the handler exception type
+     * @return the next UTF-8 state
+     * @throws IOException if the input stream threw this exception
+     * @throws X if the handler threw this exception
+     * @see Utf8#nextState(int, InputStream, Utf8ByteHandler)
+     */
+    default <X extends Exception> int nextState(int state, InputStream is, Utf8ByteHandler<X> handler) throws IOException, X {
+        return Utf8.nextState(this, state, is, handler, Utf8.BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the validity of the specified byte array between the specified indexes
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the validity
+     * @see Utf8#validity(byte[], int, int)
+     */
+    default Validity validity(byte[] b, int from, int to) {
+        return Utf8.validity(b, from, to);
+    }
+
+    /**
+     * This method is semantically equivalent to:
+     * <pre>{@code
+     * int finalState = engine.nextState(0, is, handler);
+     * Utf8.finish(finalState, handler);
+     * }</pre>
+     * @param is the input stream
+     * @param handler the handler
+     * @param <X> the handler exception type
+     * @throws IOException if the input stream threw this exception
+     * @throws X if the handler threw this exception
+     * @see Utf8#transfer(InputStream, Utf8ByteHandler)
+     */
+    default <X extends Exception> void transfer(InputStream is, Utf8ByteHandler<X> handler) throws IOException, X {
+        Utf8.finish(nextState(0, is, handler), handler);
+    }
+}
@@ -1,6 +1,7 @@
 package org.rypt.f8;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Base interface for handling a stream of unicode code points and errors
@@ -81,6 +82,16 @@ public interface Utf8Handler<X extends Exception> extends Utf8ByteHandler<X> {
                 writer.append((char)ascii);
             }
             @Override
+            public void handleAsciiRun(byte[] b, int from, int to) throws IOException {
+                if (to - from < 16) {
+                    for (int i = from; i < to; i++) {
+                        writer.append((char)b[i]);
+                    }
+                } else { //a latin-1 string is copied in bulk
+                    writer.append(new String(b, from, to - from, StandardCharsets.ISO_8859_1));
+                }
+            }
+            @Override
             public void handle2ByteCodePoint(int b1, int b2) throws IOException {
                 writer.append((char)Utf8.codePoint(b1, b2));
             }
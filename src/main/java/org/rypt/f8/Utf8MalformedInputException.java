@@ -0,0 +1,39 @@
+package org.rypt.f8;
+
+import java.nio.charset.MalformedInputException;
+
+/**
+ * Thrown by {@link Utf8ValidatingInputStream} and {@link Utf8ValidatingOutputStream} upon encountering
+ * the first malformed sequence of a byte stream.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public class Utf8MalformedInputException extends MalformedInputException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long offset;
+
+    /**
+     * Constructs an instance of this class
+     * @param offset the offset of the first byte of the malformed sequence from the start of the stream
+     * @param inputLength the length of the malformed sequence
+     */
+    public Utf8MalformedInputException(long offset, int inputLength) {
+        super(inputLength);
+        this.offset = offset;
+    }
+
+    /**
+     * Returns the offset of the first byte of the malformed sequence from the start of the stream
+     * @return the byte offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Malformed UTF-8 at offset " + offset + ", input length = " + getInputLength();
+    }
+}
@@ -0,0 +1,159 @@
+package org.rypt.f8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.Objects;
+
+/**
+ * A {@link Reader} that decodes a UTF-8 encoded byte stream in bulk directly into the caller's char array,
+ * replacing malformed input with {@code U+FFFD} exactly as {@link Utf8StringBuilder} replaces it.
+ * Unlike {@link java.io.InputStreamReader}, no intermediate char buffer is used.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public class Utf8Reader extends Reader {
+
+    private static final int NONE = -1;
+
+    private final InputStream in;
+    private final ReadableByteChannel ch;
+    private final byte[] buf;
+    private final char[] pair = new char[2];
+    private int pos;
+    private int lim;
+    private int state;
+    private int pending = NONE;
+    private boolean eof;
+
+    /**
+     * Creates a reader that decodes the specified stream
+     * @param in the UTF-8 encoded input stream
+     */
+    public Utf8Reader(InputStream in) {
+        this(Objects.requireNonNull(in), null);
+    }
+
+    /**
+     * Creates a reader that decodes the specified channel
+     * @param ch the UTF-8 encoded channel, which must be in blocking mode
+     * @throws IllegalBlockingModeException if the channel is in non-blocking mode
+     */
+    public Utf8Reader(ReadableByteChannel ch) {
+        this(null, Objects.requireNonNull(ch));
+        if (ch instanceof SelectableChannel && !((SelectableChannel)ch).isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+    }
+
+    private Utf8Reader(InputStream in, ReadableByteChannel ch) {
+        this.in = in;
+        this.ch = ch;
+        this.buf = new byte[Utf8.BUFFER_SIZE];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        synchronized (lock) {
+            ensureOpen();
+            if (len == 0) {
+                return 0;
+            }
+            int n = 0;
+            if (pending != NONE) { //the low surrogate of a pair that straddled the end of the last read
+                cbuf[off] = (char)pending;
+                pending = NONE;
+                n = 1;
+            }
+            while (n < len) {
+                if (pos == lim) {
+                    if (n != 0 || !fill()) { //don't block once any chars have been read
+                        break;
+                    }
+                }
+                if (len - n >= 2) {
+                    long result = __.decode(state, buf, pos, lim, cbuf, off + n, off + len);
+                    n += Utf8.decodedChars(result);
+                    state = Utf8.decodedState(result);
+                    pos = lim - Utf8.remainingBytes(result);
+                } else { //decode into a pair, in case the next code point needs 2 chars
+                    long result = __.decode(state, buf, pos, lim, pair, 0, 2);
+                    int m = Utf8.decodedChars(result);
+                    state = Utf8.decodedState(result);
+                    pos = lim - Utf8.remainingBytes(result);
+                    if (m != 0) {
+                        cbuf[off + n++] = pair[0];
+                        if (m == 2) { //either a low surrogate or the next code point, which is returned next time
+                            pending = pair[1];
+                        }
+                    }
+                }
+            }
+            if (n == 0 && eof) {
+                if (Utf8.isIncompleteState(state)) {
+                    state = 0;
+                    cbuf[off] = '�';
+                    return 1;
+                }
+                return -1;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Reads at least one more byte, unless the end of the stream has been reached
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int n;
+        do {
+            n = in != null ? in.read(buf, 0, buf.length) : ch.read(ByteBuffer.wrap(buf));
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        pos = 0;
+        lim = n;
+        return true;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (pos < 0) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            return pending != NONE || pos < lim && state == 0 && buf[pos] >= 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (pos < 0) {
+                return;
+            }
+            pos = lim = -1;
+            if (in != null) {
+                in.close();
+            } else {
+                ch.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.rypt.f8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ * Approximate {@link Utf8Statistics} of a file, extrapolated from a sample of windows rather than a full scan.
+ * The file is divided into equal strata, and one window at a random offset within each stratum is read,
+ * resynchronized to code point boundaries, and run through the state machine. Each count is then estimated as
+ * the file size times the ratio of that count to the bytes sampled, with a margin of error derived from the
+ * variance of that ratio between windows.
+ * <p>
+ * If the file is no larger than the windows combined, it is scanned in full, and the counts are exact.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public final class Utf8SampledStatistics {
+
+    /**
+     * The default number of windows to sample
+     */
+    public static final int DEFAULT_WINDOWS = 256;
+
+    /**
+     * The default number of bytes per window
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 16384;
+
+    private final long size;
+    private final Utf8Statistics[] windows;
+    private final long[] windowBytes;
+    private final long sampledBytes;
+
+    private Utf8SampledStatistics(long size, Utf8Statistics[] windows, long[] windowBytes) {
+        this.size = size;
+        this.windows = windows;
+        this.windowBytes = windowBytes;
+        long n = 0;
+        for (long b : windowBytes) {
+            n += b;
+        }
+        this.sampledBytes = n;
+    }
+
+    /**
+     * Samples the specified file with the default number and size of windows
+     * @param path the path to a regular file, which may be larger than 2 GB
+     * @return the sampled statistics of the file
+     * @throws IOException if the file could not be read
+     */
+    public static Utf8SampledStatistics of(Path path) throws IOException {
+        return of(path, DEFAULT_WINDOWS, DEFAULT_WINDOW_SIZE, new Random());
+    }
+
+    /**
+     * Samples the specified file
+     * @param path the path to a regular file, which may be larger than 2 GB
+     * @param windows the number of windows to sample
+     * @param windowSize the number of bytes per window, which must be at least 4
+     * @param random the source of window offsets
+     * @return the sampled statistics of the file
+     * @throws IOException if the file could not be read
+     */
+    public static Utf8SampledStatistics of(Path path, int windows, int windowSize, Random random) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return of(ch, windows, windowSize, random);
+        }
+    }
+
+    /**
+     * Samples the specified channel's file with positional reads, which do not modify the channel's position
+     * @param ch the file channel
+     * @param windows the number of windows to sample
+     * @param windowSize the number of bytes per window, which must be at least 4
+     * @param random the source of window offsets
+     * @return the sampled statistics of the file
+     * @throws IOException if the channel threw this exception
+     */
+    public static Utf8SampledStatistics of(FileChannel ch, int windows, int windowSize, Random random) throws IOException {
+        if (windows <= 0) {
+            throw new IllegalArgumentException("windows: " + windows);
+        }
+        if (windowSize < 4) {
+            throw new IllegalArgumentException("windowSize: " + windowSize);
+        }
+        long size = ch.size();
+        byte[] b = BufferPool.acquire(windowSize + 3);
+        ByteBuffer bb = ByteBuffer.wrap(b, 0, windowSize + 3).slice();
+        Utf8SampledStatistics result;
+        if (size <= (long)windows * windowSize) { //scan the whole file as a single window
+            Utf8Statistics stats = new Utf8Statistics();
+            for (long pos = 0; pos < size; ) {
+                int n = read(ch, bb, pos);
+                stats.write(b, 0, n);
+                pos += n;
+            }
+            stats.close();
+            result = new Utf8SampledStatistics(size, new Utf8Statistics[]{stats}, new long[]{size});
+        } else {
+            Utf8Statistics[] stats = new Utf8Statistics[windows];
+            long[] bytes = new long[windows];
+            double stratum = (double)size / windows;
+            for (int k = 0; k < windows; k++) {
+                long start = (long)(k * stratum + random.nextDouble() * (stratum - windowSize));
+                int n = read(ch, bb, start);
+                //skip the tail of a sequence which started before the window, and stop at the next boundary after it
+                int from = start == 0 ? 0 : Parallel.boundary(b, 0, n);
+                boolean end = start + n == size;
+                int to = end ? n : Parallel.boundary(b, Math.min(windowSize, n), n);
+                Utf8Statistics s = new Utf8Statistics();
+                s.write(b, from, to - from);
+                if (end) {
+                    s.close();
+                }
+                stats[k] = s;
+                bytes[k] = to - from;
+            }
+            result = new Utf8SampledStatistics(size, stats, bytes);
+        }
+        BufferPool.release(b);
+        return result;
+    }
+
+    /**
+     * Reads from the specified position until the buffer is full or the end of the file is reached
+     */
+    private static int read(FileChannel ch, ByteBuffer bb, long pos) throws IOException {
+        bb.clear();
+        while (bb.hasRemaining() && ch.read(bb, pos + bb.position()) >= 0) {
+            //a blocking positional read returns at least 1 byte before the end of the file
+        }
+        return bb.position();
+    }
+
+    /**
+     * Returns the estimated total of the specified count over the whole file, e.g.,
+     * {@code estimate(Utf8Statistics::count2Byte)}
+     * @param count the count of each window's statistics
+     * @return the estimated count
+     */
+    public long estimate(ToLongFunction<Utf8Statistics> count) {
+        long y = 0;
+        for (Utf8Statistics s : windows) {
+            y += count.applyAsLong(s);
+        }
+        if (sampledBytes == size || sampledBytes == 0) {
+            return y;
+        }
+        return Math.round((double)y / sampledBytes * size);
+    }
+
+    /**
+     * Returns the margin of error of {@link #estimate(ToLongFunction)} for the specified count, i.e., the specified
+     * number of standard errors, e.g., 1.96 for a 95% confidence interval. The margin is 0 if the file was
+     * scanned in full.
+     * @param count the count of each window's statistics
+     * @param z the number of standard errors
+     * @return the margin of error
+     */
+    public double marginOfError(ToLongFunction<Utf8Statistics> count, double z) {
+        int k = windows.length;
+        if (sampledBytes == size || k < 2) {
+            return 0;
+        }
+        long[] y = new long[k];
+        long total = 0;
+        for (int i = 0; i < k; i++) {
+            total += y[i] = count.applyAsLong(windows[i]);
+        }
+        double r = (double)total / sampledBytes;
+        double ss = 0;
+        for (int i = 0; i < k; i++) {
+            double d = y[i] - r * windowBytes[i];
+            ss += d * d;
+        }
+        double meanBytes = (double)sampledBytes / k;
+        double f = (double)sampledBytes / size; //finite population correction
+        double variance = (1 - f) * ss / (k - 1) / (k * meanBytes * meanBytes);
+        return z * size * Math.sqrt(variance);
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes which were run through the state machine
+     */
+    public long sampledBytes() {
+        return sampledBytes;
+    }
+
+    /**
+     * @return true if the whole file was scanned, so that the counts are exact
+     */
+    public boolean isExact() {
+        return sampledBytes == size;
+    }
+
+    /**
+     * @return the estimated number of valid UTF-8 code points
+     * @see Utf8Statistics#countCodePoints()
+     */
+    public long countCodePoints() {
+        return estimate(Utf8Statistics::countCodePoints);
+    }
+
+    /**
+     * @return the estimated number of invalid UTF-8 byte sequences
+     * @see Utf8Statistics#countInvalid()
+     */
+    public long countInvalid() {
+        return estimate(Utf8Statistics::countInvalid);
+    }
+
+    /**
+     * @return the estimated number of invalid UTF-8 byte sequences, ignoring a final truncated sequence
+     * @see Utf8Statistics#countInvalidIgnoringTruncation()
+     */
+    public long countInvalidIgnoringTruncation() {
+        return estimate(Utf8Statistics::countInvalidIgnoringTruncation);
+    }
+
+    /**
+     * @return the estimated number of ASCII bytes
+     * @see Utf8Statistics#countAscii()
+     */
+    public long countAscii() {
+        return estimate(Utf8Statistics::countAscii);
+    }
+
+    /**
+     * @return the estimated number of 2-byte UTF-8 characters
+     * @see Utf8Statistics#count2Byte()
+     */
+    public long count2Byte() {
+        return estimate(Utf8Statistics::count2Byte);
+    }
+
+    /**
+     * @return the estimated number of 3-byte UTF-8 characters
+     * @see Utf8Statistics#count3Byte()
+     */
+    public long count3Byte() {
+        return estimate(Utf8Statistics::count3Byte);
+    }
+
+    /**
+     * @return the estimated number of 4-byte UTF-8 characters
+     * @see Utf8Statistics#count4Byte()
+     */
+    public long count4Byte() {
+        return estimate(Utf8Statistics::count4Byte);
+    }
+
+    /**
+     * @return true if the estimated counts look like UTF-8 (and not plain ASCII)
+     * @see Utf8Statistics#looksLikeUtf8()
+     */
+    public boolean looksLikeUtf8() {
+        return count2Byte() + count3Byte() + count4Byte() > countInvalidIgnoringTruncation() * 10;
+    }
+
+    @Override
+    public String toString() {
+        return "ascii=" + countAscii()
+                + "; 2-byte=" + count2Byte()
+                + "; 3-byte=" + count3Byte()
+                + "; 4-byte=" + count4Byte()
+                + "; error=" + countInvalid()
+                + (isExact() ? "" : " (sampled " + sampledBytes + " of " + size + " bytes)");
+    }
+}
@@ -1,6 +1,11 @@
 package org.rypt.f8;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * An implementation of {@link Utf8Handler} that records statistics for valid and invalid UTF-8 byte sequences
@@ -17,6 +22,16 @@ public class Utf8Statistics extends OutputStream implements Utf8Handler<RuntimeE
     private long numTruncated;
     private long numError;
 
+    //up to 3 leading continuation bytes, packed little-endian, which were written in the initial state
+    //and must be reinterpreted when these statistics are merged after another's
+    private int head;
+    private int headLength;
+    private boolean headDone;
+
+    //false if a subclass overrides handle1ByteCodePoint without also overriding handleAsciiRun,
+    //in which case ASCII runs must be passed to handle1ByteCodePoint byte by byte
+    final boolean bulkAscii = __.isBulkAscii(getClass());
+
     public void reset() {
         state = 0;
         numAscii = 0;
@@ -25,23 +40,163 @@ public class Utf8Statistics extends OutputStream implements Utf8Handler<RuntimeE
         num4byte = 0;
         numTruncated = 0;
         numError = 0;
+        head = 0;
+        headLength = 0;
+        headDone = false;
     }
 
     @Override
     public void write(int b) {
+        if (!headDone) {
+            trackHead((byte)b);
+        }
         state = Utf8.nextState(state, (byte)b, this);
     }
 
     @SuppressWarnings("NullableProblems")
     @Override
     public void write(byte[] b, int off, int len) {
+        for (int i = off, end = off + len; !headDone && i < end; i++) {
+            trackHead(b[i]);
+        }
         state = Utf8.nextState(state, b, off, off + len, this);
     }
 
     @SuppressWarnings("NullableProblems")
     @Override
     public void write(byte[] b) {
-        state = Utf8.nextState(state, b, 0, b.length, this);
+        write(b, 0, b.length);
+    }
+
+    private void trackHead(byte b) {
+        if (headLength == 3 || b > (byte)0xbf) {
+            headDone = true;
+        } else {
+            head |= (b & 0xff) << (headLength++ << 3);
+        }
+    }
+
+    /**
+     * Merges the specified statistics into these statistics, such that these statistics reflect all the
+     * bytes written to them followed by all the bytes written to the specified statistics, as though
+     * they had been written to these statistics alone. A sequence split across the boundary is counted
+     * exactly as it would have been without the split. This operation is associative, so
+     * statistics of consecutive chunks may be computed independently and merged in order, e.g. as the combiner of a
+     * {@link java.util.stream.Collector Collector}. The specified statistics should not have been closed, and
+     * are not modified.
+     * <p>
+     * Only bytes passed to the {@code write} methods of the specified statistics are accounted for at the boundary;
+     * bytes passed to it as a handler are counted as though they started a new stream. Only the counts are
+     * merged: the handler methods of these statistics are not called for the bytes at the boundary, so subclasses
+     * whose handlers keep state of their own, such as {@link Utf8StringBuilder}, do not support merging.
+     * @param other the statistics of the bytes following these statistics' bytes
+     * @return these statistics
+     */
+    public Utf8Statistics merge(Utf8Statistics other) {
+        //replay the other's leading continuation bytes from this state; they were counted as errors by the other.
+        //they are counted by a plain instance, so that the handler methods of a subclass never see them
+        Utf8Statistics sink = new Utf8Statistics();
+        int s = state;
+        for (int i = 0, h = other.head; i < other.headLength; i++, h >>>= 8) {
+            s = Utf8.nextState(s, (byte)h, sink);
+        }
+        if (other.headDone) {
+            //the other's next byte is not a continuation byte (or is a 4th one), and the other processed it from
+            //the initial state; all such bytes affect this state exactly as an ASCII byte would
+            Utf8.nextState(s, (byte)0, sink);
+            sink.numAscii--;
+            s = other.state;
+        }
+        state = s;
+        numAscii += sink.numAscii + other.numAscii;
+        num2byte += sink.num2byte + other.num2byte;
+        num3byte += sink.num3byte + other.num3byte;
+        num4byte += sink.num4byte + other.num4byte;
+        numTruncated += other.numTruncated;
+        numError += sink.numError + other.numError - other.headLength;
+
+        if (!headDone) {
+            for (int i = 0, h = other.head; !headDone && i < other.headLength; i++, h >>>= 8) {
+                trackHead((byte)h);
+            }
+            headDone |= other.headDone;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the statistics of the specified byte array, which is split into chunks of about 1 MB whose
+     * statistics are computed in parallel and {@link #merge(Utf8Statistics) merged}. The chunks are processed in
+     * the {@link java.util.concurrent.ForkJoinPool ForkJoinPool} of the calling thread, if it is a
+     * worker thread, or else in the {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+     * @param b the byte array
+     * @return the closed statistics of the byte array
+     */
+    public static Utf8Statistics parallelOf(byte[] b) {
+        return parallelOf(b, 0, b.length, Utf8.PARALLEL_ARRAY_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the statistics of the specified byte array between the specified indexes, which is split into chunks
+     * whose statistics are computed in parallel and {@link #merge(Utf8Statistics) merged}. The chunks are processed in
+     * the {@link java.util.concurrent.ForkJoinPool ForkJoinPool} of the calling thread, if it is a
+     * worker thread, or else in the {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @param chunkSize the number of bytes at or below which a chunk is processed sequentially
+     * @return the closed statistics of the byte array between the specified indexes
+     */
+    public static Utf8Statistics parallelOf(byte[] b, int from, int to, int chunkSize) {
+        if (from > to) {
+            throw new IllegalArgumentException(from + " > " + to);
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        }
+        if (from < 0 || to > b.length) {
+            throw new ArrayIndexOutOfBoundsException(from < 0 ? from : to);
+        }
+        Utf8Statistics stats = new Parallel.ArrayStatistics(b, from, to, chunkSize).invoke();
+        stats.close();
+        return stats;
+    }
+
+    /**
+     * Returns the statistics of the specified file, which is mapped into memory in chunks of about 16 MB whose
+     * statistics are computed in parallel and {@link #merge(Utf8Statistics) merged}. The chunks are processed in
+     * the {@link java.util.concurrent.ForkJoinPool ForkJoinPool} of the calling thread, if it is a
+     * worker thread, or else in the {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+     * @param path the path to a regular file, which may be larger than 2 GB
+     * @return the closed statistics of the file
+     * @throws IOException if the file could not be read
+     */
+    public static Utf8Statistics parallelOf(Path path) throws IOException {
+        return parallelOf(path, Utf8.PARALLEL_FILE_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the statistics of the specified file, which is mapped into memory in chunks whose
+     * statistics are computed in parallel and {@link #merge(Utf8Statistics) merged}. The chunks are processed in
+     * the {@link java.util.concurrent.ForkJoinPool ForkJoinPool} of the calling thread, if it is a
+     * worker thread, or else in the {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+     * @param path the path to a regular file, which may be larger than 2 GB
+     * @param chunkSize the number of bytes at or below which a chunk is processed sequentially
+     * @return the closed statistics of the file
+     * @throws IOException if the file could not be read
+     */
+    public static Utf8Statistics parallelOf(Path path, int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        }
+        Utf8Statistics stats;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            stats = new Parallel.FileStatistics(ch, 0, ch.size(), chunkSize).invoke();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        stats.close();
+        return stats;
     }
 
     @Override
@@ -97,6 +252,17 @@ public class Utf8Statistics extends OutputStream implements Utf8Handler<RuntimeE
         numAscii++;
     }
 
+    @Override
+    public void handleAsciiRun(byte[] b, int from, int to) {
+        if (bulkAscii) {
+            numAscii += to - from;
+        } else { //a subclass overrides handle1ByteCodePoint, so must see every byte
+            for (int i = from; i < to; i++) {
+                handle1ByteCodePoint(b[i]);
+            }
+        }
+    }
+
     @Override
     public void handle2ByteCodePoint(int b1, int b2) {
         num2byte++;
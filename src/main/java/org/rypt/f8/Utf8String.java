@@ -0,0 +1,274 @@
+package org.rypt.f8;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable {@link CharSequence} which stores its chars as valid UTF-8 bytes. Text which is mostly ASCII, but
+ * not entirely Latin-1, takes under half the memory of a {@link String}, which stores it as UTF-16; CJK text,
+ * which takes 3 bytes per char in UTF-8 but 2 in UTF-16, takes about as much. Random access is amortized O(1)
+ * through a sparse index which holds the byte offset of every 32nd char; pure ASCII needs no index at all.
+ * <p>
+ * The hash code equals that of the equivalent string, and {@link #compareTo(Utf8String)} orders values exactly
+ * as {@link String#compareTo(String)} orders the equivalent strings.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public final class Utf8String implements CharSequence, Comparable<Utf8String> {
+
+    private static final int SHIFT = 5;
+    private static final int STRIDE = 1 << SHIFT;
+    private static final int MASK = STRIDE - 1;
+
+    private final byte[] bytes;
+    private final int length;
+    //index[k] is the byte offset of the code point containing char k * STRIDE,
+    //complemented if that char is the low surrogate of a pair; null if all chars are ASCII
+    private final int[] index;
+    private int hash;
+
+    private Utf8String(byte[] bytes) {
+        this.bytes = bytes;
+        this.length = __.countChars(bytes, 0, bytes.length, true);
+        this.index = length == bytes.length ? null : index(bytes, length);
+    }
+
+    private static int[] index(byte[] b, int length) {
+        int[] index = new int[(length + MASK) >>> SHIFT];
+        for (int off = 0, c = 0; off < b.length; ) {
+            int b1 = b[off];
+            if ((b1 & 0xf0) == 0xf0) { //11110xxx: a surrogate pair
+                if ((c & MASK) == 0) {
+                    index[c >>> SHIFT] = off;
+                } else if ((c + 1 & MASK) == 0) {
+                    index[c + 1 >>> SHIFT] = ~off;
+                }
+                c += 2;
+                off += 4;
+            } else {
+                if ((c & MASK) == 0) {
+                    index[c >>> SHIFT] = off;
+                }
+                c++;
+                off += b1 >= 0 ? 1 : b1 < (byte)0xe0 ? 2 : 3;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the specified chars. Unpaired surrogates are replaced with {@code '?'},
+     * as by {@link SurrogatePolicy#REPLACE}.
+     * @param s the chars
+     * @return the UTF-8 string
+     */
+    public static Utf8String valueOf(CharSequence s) {
+        if (s instanceof Utf8String) {
+            return (Utf8String)s;
+        }
+        int n = s.length();
+        byte[] b = new byte[Utf8.encodedLength(s, 0, n, SurrogatePolicy.REPLACE)];
+        Utf8.encode(s, 0, n, b, 0, SurrogatePolicy.REPLACE);
+        return new Utf8String(b);
+    }
+
+    /**
+     * Returns a copy of the specified UTF-8 bytes between the specified indexes, in which each malformed sequence is
+     * replaced with {@code U+FFFD}, exactly as {@link Utf8StringBuilder} would replace it. Valid bytes are copied
+     * as-is.
+     * @param b the byte array
+     * @param from the start index
+     * @param to the end index, exclusive
+     * @return the UTF-8 string
+     */
+    public static Utf8String valueOf(byte[] b, int from, int to) {
+        Validity v = Utf8.validity(b, from, to);
+        if (v == Validity.ASCII || v == Validity.UNDERFLOW_R0) {
+            return new Utf8String(Arrays.copyOfRange(b, from, to));
+        }
+        return new Utf8String(Utf8.decodeToString(b, from, to).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the number of UTF-8 bytes
+     * @return the number of UTF-8 bytes
+     */
+    public int utf8Length() {
+        return bytes.length;
+    }
+
+    /**
+     * Returns a copy of the UTF-8 bytes
+     * @return a copy of the UTF-8 bytes
+     */
+    public byte[] toByteArray() {
+        return bytes.clone();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int i) {
+        if (i < 0 || i >= length) {
+            throw new StringIndexOutOfBoundsException(i);
+        }
+        if (index == null) {
+            return (char)bytes[i];
+        }
+        long pos = seek(i);
+        int off = (int)pos;
+        int cp = codePointAt(off);
+        if (Character.isBmpCodePoint(cp)) {
+            return (char)cp;
+        }
+        return (int)(pos >>> 32) == i ? Character.highSurrogate(cp) : Character.lowSurrogate(cp);
+    }
+
+    /**
+     * Returns the char index (in the upper half) and byte offset (in the lower half) of the code point containing
+     * the specified char, walking forward from the nearest checkpoint at or before it
+     */
+    private long seek(int i) {
+        byte[] b = bytes;
+        int k = i >>> SHIFT;
+        int off = index[k];
+        int c = k << SHIFT;
+        if (off < 0) {
+            off = ~off;
+            c--;
+        }
+        for (;;) {
+            int b1 = b[off];
+            int len = b1 >= 0 ? 1 : b1 < (byte)0xe0 ? 2 : b1 < (byte)0xf0 ? 3 : 4;
+            int next = len == 4 ? c + 2 : c + 1;
+            if (next > i) {
+                return (long)c << 32 | off;
+            }
+            c = next;
+            off += len;
+        }
+    }
+
+    /**
+     * Returns the byte offset of the specified char index, or -1 if it is the low surrogate of a pair
+     */
+    private int offset(int i) {
+        if (index == null || i == length) {
+            return index == null ? i : bytes.length;
+        }
+        long pos = seek(i);
+        return (int)(pos >>> 32) == i ? (int)pos : -1;
+    }
+
+    private int codePointAt(int off) {
+        byte[] b = bytes;
+        int b1 = b[off];
+        if (b1 >= 0) {
+            return b1;
+        } else if (b1 < (byte)0xe0) {
+            return Utf8.codePoint(b1, b[off + 1]);
+        } else if (b1 < (byte)0xf0) {
+            return Utf8.codePoint(b1, b[off + 1], b[off + 2]);
+        }
+        return Utf8.codePoint(b1, b[off + 1], b[off + 2], b[off + 3]);
+    }
+
+    /**
+     * Returns the chars between the specified indexes as a {@code Utf8String}, or as a {@link String} if either
+     * index splits a surrogate pair, since an unpaired surrogate has no UTF-8 encoding
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        if (start == 0 && end == length) {
+            return this;
+        }
+        int from = offset(start);
+        int to = offset(end);
+        if (from < 0 || to < 0) {
+            return toString().substring(start, end);
+        }
+        return new Utf8String(Arrays.copyOfRange(bytes, from, to));
+    }
+
+    @Override
+    public IntStream codePoints() {
+        return Utf8.codePoints(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && bytes.length != 0) {
+            byte[] b = bytes;
+            for (int off = 0; off < b.length; ) {
+                int b1 = b[off];
+                if (b1 >= 0) {
+                    h = 31 * h + b1;
+                    off++;
+                } else {
+                    int cp = codePointAt(off);
+                    if (Character.isBmpCodePoint(cp)) {
+                        h = 31 * h + cp;
+                        off += b1 < (byte)0xe0 ? 2 : 3;
+                    } else {
+                        h = 31 * (31 * h + Character.highSurrogate(cp)) + Character.lowSurrogate(cp);
+                        off += 4;
+                    }
+                }
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Returns true if the specified object is a {@code Utf8String} with the same chars. Like {@link String},
+     * a {@code Utf8String} is never equal to a different type of {@link CharSequence}.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o == this || o instanceof Utf8String && Arrays.equals(bytes, ((Utf8String)o).bytes);
+    }
+
+    /**
+     * Compares the chars of this string to those of the specified string lexicographically, exactly as
+     * {@link String#compareTo(String)} compares the equivalent strings
+     */
+    @Override
+    public int compareTo(Utf8String o) {
+        byte[] a = bytes;
+        byte[] b = o.bytes;
+        int n = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < n && a[i] == b[i]) {
+            i++;
+        }
+        if (i == n) { //a prefix of valid UTF-8 bytes is a prefix of the chars
+            return length - o.length;
+        }
+        while (a[i] < (byte)0xc0) { //back up to the start of the differing code points
+            i--;
+        }
+        int cp1 = codePointAt(i);
+        int cp2 = o.codePointAt(i);
+        //UTF-8 orders by code point, but UTF-16 orders surrogate pairs before U+E000..U+FFFF
+        int c1 = Character.isBmpCodePoint(cp1) ? cp1 : Character.highSurrogate(cp1);
+        int c2 = Character.isBmpCodePoint(cp2) ? cp2 : Character.highSurrogate(cp2);
+        if (c1 == c2) {
+            return Character.lowSurrogate(cp1) - Character.lowSurrogate(cp2);
+        }
+        return c1 - c2;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
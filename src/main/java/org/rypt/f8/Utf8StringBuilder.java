@@ -1,5 +1,8 @@
 package org.rypt.f8;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * An implementation of {@link Utf8Handler} that records byte statistics and decodes a UTF-8 encoded
  * byte stream into a string.
@@ -9,17 +12,82 @@ package org.rypt.f8;
 public class Utf8StringBuilder extends Utf8Statistics implements CharSequence {
     protected final StringBuilder sb;
 
+    private final boolean compact;
+    //while latin1 is true, the chars decoded so far are all <= U+00FF, and are stored one byte per char in bytes
+    private boolean latin1;
+    private byte[] bytes;
+    private int count;
+
     public Utf8StringBuilder(StringBuilder sb) {
         this.sb = sb;
+        this.compact = false;
     }
 
     public Utf8StringBuilder() {
         this(new StringBuilder());
     }
 
+    /**
+     * Creates a string builder which, if {@code compact} is true, decodes into a byte array, one byte per char,
+     * for as long as every code point is at most {@code U+00FF}, and switches to {@link #sb} only once a
+     * wider code point is decoded. A Latin-1 string is then built directly from the byte array, as with
+     * JDK 9+ compact strings, instead of being widened into UTF-16 chars and narrowed back again.
+     * Until the switch, {@link #sb} is empty.
+     * @param compact whether to decode Latin-1 text into a byte array
+     */
+    public Utf8StringBuilder(boolean compact) {
+        this.sb = new StringBuilder();
+        this.compact = compact;
+        this.latin1 = compact;
+        this.bytes = compact ? new byte[16] : null;
+    }
+
+    //the number of bytes at or above which a write is presized, below which the extra pass costs more than it saves
+    private static final int PRESIZE_THRESHOLD = 1 << 16;
+
+    @SuppressWarnings("NullableProblems")
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (len >= PRESIZE_THRESHOLD) {
+            //presize for the chars these bytes decode to, rather than growing and copying repeatedly;
+            //the word-at-a-time count is exact for valid bytes, which needn't be validated for a mere hint
+            int n = __.countChars(b, off, off + len, true);
+            if (latin1) {
+                ensureCapacity(n);
+            } else {
+                sb.ensureCapacity(sb.length() + n);
+            }
+        }
+        super.write(b, off, len);
+    }
+
+    private void ensureCapacity(int n) {
+        if (n > bytes.length - count) {
+            bytes = Arrays.copyOf(bytes, Math.max(count + n, bytes.length << 1));
+        }
+    }
+
+    /**
+     * Moves the chars decoded so far into {@link #sb}, which stores all subsequent chars
+     */
+    private void inflate() {
+        latin1 = false;
+        sb.ensureCapacity(bytes.length);
+        sb.append(new String(bytes, 0, count, StandardCharsets.ISO_8859_1));
+        count = 0;
+    }
+
     @Override
     public void handleCodePoint(int codePoint) {
         super.handleCodePoint(codePoint);
+        if (latin1) {
+            if (codePoint <= 0xff) {
+                ensureCapacity(1);
+                bytes[count++] = (byte)codePoint;
+                return;
+            }
+            inflate();
+        }
         sb.appendCodePoint(codePoint);
     }
 
@@ -27,35 +95,95 @@ public class Utf8StringBuilder extends Utf8Statistics implements CharSequence {
     public void reset() {
         super.reset();
         sb.setLength(0);
+        latin1 = compact;
+        count = 0;
+    }
+
+    /**
+     * Not supported: merging statistics would not merge the decoded text. A string builder may still be merged
+     * into plain {@link Utf8Statistics}.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Utf8Statistics merge(Utf8Statistics other) {
+        throw new UnsupportedOperationException("merge");
     }
 
     @Override
     public void handleError() {
         super.handleError();
+        if (latin1) {
+            inflate();
+        }
         sb.append('�');
     }
 
     @Override
     public void handle1ByteCodePoint(int ascii) {
         super.handle1ByteCodePoint(ascii);
-        sb.append((char)ascii);
+        if (latin1) {
+            ensureCapacity(1);
+            bytes[count++] = (byte)ascii;
+        } else {
+            sb.append((char)ascii);
+        }
+    }
+
+    @Override
+    public void handleAsciiRun(byte[] b, int from, int to) {
+        if (!bulkAscii) { //a subclass overrides handle1ByteCodePoint, so must see every byte
+            for (int i = from; i < to; i++) {
+                handle1ByteCodePoint(b[i]);
+            }
+            return;
+        }
+        super.handleAsciiRun(b, from, to);
+        if (latin1) {
+            ensureCapacity(to - from);
+            System.arraycopy(b, from, bytes, count, to - from);
+            count += to - from;
+            return;
+        }
+        StringBuilder sb = this.sb;
+        if (to - from < 16) {
+            for (int i = from; i < to; i++) {
+                sb.append((char)b[i]);
+            }
+        } else { //a latin-1 string is copied in bulk
+            sb.append(new String(b, from, to - from, StandardCharsets.ISO_8859_1));
+        }
     }
 
     @Override
     public void handle2ByteCodePoint(int b1, int b2) {
         super.handle2ByteCodePoint(b1, b2);
-        sb.append((char)Utf8.codePoint(b1, b2));
+        int cp = Utf8.codePoint(b1, b2);
+        if (latin1) {
+            if (cp <= 0xff) {
+                ensureCapacity(1);
+                bytes[count++] = (byte)cp;
+                return;
+            }
+            inflate();
+        }
+        sb.append((char)cp);
     }
 
     @Override
     public void handle3ByteCodePoint(int b1, int b2, int b3) {
         super.handle3ByteCodePoint(b1, b2, b3);
+        if (latin1) {
+            inflate();
+        }
         sb.append((char)Utf8.codePoint(b1, b2, b3));
     }
 
     @Override
     public void handle4ByteCodePoint(int b1, int b2, int b3, int b4) {
         super.handle4ByteCodePoint(b1, b2, b3, b4);
+        if (latin1) {
+            inflate();
+        }
         int cp = Utf8.codePoint(b1, b2, b3, b4);
         sb.append(Character.highSurrogate(cp));
         sb.append(Character.lowSurrogate(cp));
@@ -63,21 +191,33 @@ public class Utf8StringBuilder extends Utf8Statistics implements CharSequence {
 
     @Override
     public int length() {
-        return sb.length();
+        return latin1 ? count : sb.length();
     }
 
     @Override
     public char charAt(int index) {
+        if (latin1) {
+            if (index < 0 || index >= count) {
+                throw new StringIndexOutOfBoundsException(index);
+            }
+            return (char)(bytes[index] & 0xff);
+        }
         return sb.charAt(index);
     }
 
     @Override
     public CharSequence subSequence(int start, int end) {
+        if (latin1) {
+            if (start < 0 || start > end || end > count) {
+                throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + count);
+            }
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
         return sb.subSequence(start, end);
     }
 
     @Override
     public String toString() {
-        return sb.toString();
+        return latin1 ? new String(bytes, 0, count, StandardCharsets.ISO_8859_1) : sb.toString();
     }
 }
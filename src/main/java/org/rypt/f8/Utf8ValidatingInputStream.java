@@ -0,0 +1,88 @@
+package org.rypt.f8;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream filter that passes bytes through untouched while validating them as UTF-8 in the same pass.
+ * By default, the first malformed sequence causes a {@link Utf8MalformedInputException} reporting its offset
+ * to be thrown from the read that encounters it; alternatively, {@link Utf8Statistics} are collected and
+ * all bytes are passed through. No bytes are buffered. Marking is not supported, and skipped bytes are validated.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public class Utf8ValidatingInputStream extends FilterInputStream {
+
+    private final Utf8Validator validator;
+
+    /**
+     * Creates a filter which throws a {@link Utf8MalformedInputException} upon the first malformed sequence,
+     * including a truncated sequence at the end of the stream
+     * @param in the underlying input stream
+     */
+    public Utf8ValidatingInputStream(InputStream in) {
+        super(in);
+        this.validator = new Utf8Validator(null);
+    }
+
+    /**
+     * Creates a filter which writes all bytes read to the specified statistics, which are closed
+     * once the end of the stream has been reached
+     * @param in the underlying input stream
+     * @param stats the statistics to collect
+     */
+    public Utf8ValidatingInputStream(InputStream in, Utf8Statistics stats) {
+        super(in);
+        this.validator = new Utf8Validator(stats);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            validator.finish();
+        } else {
+            validator.update(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n < 0) {
+            validator.finish();
+        } else {
+            validator.update(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        byte[] b = new byte[(int)Math.min(n, Utf8.BUFFER_SIZE)];
+        long remaining = n;
+        for (int r; remaining > 0 && (r = read(b, 0, (int)Math.min(b.length, remaining))) >= 0; ) {
+            remaining -= r;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
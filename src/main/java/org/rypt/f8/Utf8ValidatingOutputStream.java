@@ -0,0 +1,62 @@
+package org.rypt.f8;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream filter that forwards bytes untouched while validating them as UTF-8 in the same pass.
+ * By default, the first malformed sequence causes a {@link Utf8MalformedInputException} reporting its offset
+ * to be thrown, and the chunk containing it is not forwarded; alternatively, {@link Utf8Statistics} are collected
+ * and all bytes are forwarded. No bytes are buffered.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+public class Utf8ValidatingOutputStream extends FilterOutputStream {
+
+    private final Utf8Validator validator;
+
+    /**
+     * Creates a filter which throws a {@link Utf8MalformedInputException} upon the first malformed sequence,
+     * including a truncated sequence at the end of the stream upon {@link #close()}
+     * @param out the underlying output stream
+     */
+    public Utf8ValidatingOutputStream(OutputStream out) {
+        super(out);
+        this.validator = new Utf8Validator(null);
+    }
+
+    /**
+     * Creates a filter which writes all bytes to the specified statistics, which are closed along with this stream
+     * @param out the underlying output stream
+     * @param stats the statistics to collect
+     */
+    public Utf8ValidatingOutputStream(OutputStream out, Utf8Statistics stats) {
+        super(out);
+        this.validator = new Utf8Validator(stats);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        validator.update(b);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((off | len | b.length - (off + len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        validator.update(b, off, len);
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            validator.finish();
+        }
+    }
+}
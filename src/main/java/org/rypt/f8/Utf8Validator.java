@@ -0,0 +1,130 @@
+package org.rypt.f8;
+
+/**
+ * Validates consecutive chunks of a byte stream, either throwing a {@link Utf8MalformedInputException}
+ * upon the first malformed sequence or else collecting {@link Utf8Statistics}.
+ */
+final class Utf8Validator implements Utf8ByteHandler<Utf8MalformedInputException> {
+
+    private final Utf8Statistics stats;
+    private int state;
+    private long position;
+    private long index;
+    private boolean finished;
+
+    /**
+     * @param stats the statistics to collect, or null to fail fast
+     */
+    Utf8Validator(Utf8Statistics stats) {
+        this.stats = stats;
+    }
+
+    void update(int b) throws Utf8MalformedInputException {
+        if (stats != null) {
+            stats.write(b);
+        } else {
+            index = position;
+            state = Utf8.nextState(state, (byte)b, this);
+        }
+        position++;
+    }
+
+    void update(byte[] b, int off, int len) throws Utf8MalformedInputException {
+        if (stats != null) {
+            stats.write(b, off, len);
+            position += len;
+            return;
+        }
+        int i = off;
+        int end = off + len;
+        while (i < end && state != 0) { //finish the sequence which straddles the previous chunk
+            step(b, i++, off);
+        }
+        if (i < end) {
+            switch (__.vectorValidity(b, i, end)) {
+                case ASCII:
+                case UNDERFLOW_R0:
+                    break;
+                case MALFORMED: //locate the malformed sequence
+                    while (i < end) {
+                        step(b, i++, off);
+                    }
+                    break;
+                default: //carry the state of the truncated sequence into the next chunk
+                    i = end - 1;
+                    while ((b[i] & 0xc0) != 0xc0) {
+                        i--;
+                    }
+                    while (i < end) {
+                        step(b, i++, off);
+                    }
+            }
+        }
+        position += len;
+    }
+
+    private void step(byte[] b, int i, int off) throws Utf8MalformedInputException {
+        index = position + i - off;
+        state = Utf8.nextState(state, b[i], this);
+    }
+
+    /**
+     * Validates the end of the stream, which is malformed if it ends with a truncated sequence
+     */
+    void finish() throws Utf8MalformedInputException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (stats != null) {
+            stats.close();
+        } else {
+            index = position;
+            Utf8.finish(state, this);
+            state = 0;
+        }
+    }
+
+    @Override
+    public void handle1ByteCodePoint(int b1) {
+    }
+
+    @Override
+    public void handleAsciiRun(byte[] b, int from, int to) {
+    }
+
+    @Override
+    public void handle2ByteCodePoint(int b1, int b2) {
+    }
+
+    @Override
+    public void handle3ByteCodePoint(int b1, int b2, int b3) {
+    }
+
+    @Override
+    public void handle4ByteCodePoint(int b1, int b2, int b3, int b4) {
+    }
+
+    @Override
+    public void handlePrefixError(int err) throws Utf8MalformedInputException {
+        throw new Utf8MalformedInputException(index, 1);
+    }
+
+    @Override
+    public void handleContinuationError(int b1, int err) throws Utf8MalformedInputException {
+        if (b1 == (byte)0xed && err >= (byte)0xa0 && err <= (byte)0xbf) { //surrogate
+            throw new Utf8MalformedInputException(index - 1, 2);
+        }
+        throw new Utf8MalformedInputException(index - 1, 1);
+    }
+
+    @Override
+    public void handleContinuationError(int b1, int b2, int err) throws Utf8MalformedInputException {
+        throw new Utf8MalformedInputException(index - 2, 2);
+    }
+
+    @Override
+    public void handleContinuationError(int b1, int b2, int b3, int err) throws Utf8MalformedInputException {
+        throw new Utf8MalformedInputException(index - 3, 3);
+    }
+}
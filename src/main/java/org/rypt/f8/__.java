@@ -1,138 +1,574 @@
 package org.rypt.f8;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 class __ {
 
-    static <X extends Exception> int state(byte[] b, int off, int to, Utf8ByteHandler<X> handler) throws X {
+    private static final long NON_ASCII = 0x8080808080808080L;
+
+    /**
+     * A {@code (byte[], int)long} view of a byte array in little-endian order, or null
+     * if this JVM does not support byte array view var handles (i.e., Java 8)
+     */
+    private static final MethodHandle LONGS = longs();
+
+    private static MethodHandle longs() {
+        try {
+            Class<?> accessMode = Class.forName("java.lang.invoke.VarHandle$AccessMode");
+            Object varHandle = MethodHandles.class.getMethod("byteArrayViewVarHandle", Class.class, ByteOrder.class)
+                    .invoke(null, long[].class, ByteOrder.LITTLE_ENDIAN);
+            MethodHandle mh = (MethodHandle)varHandle.getClass().getMethod("toMethodHandle", accessMode)
+                    .invoke(varHandle, accessMode.getField("GET").get(null));
+            return mh.asType(MethodType.methodType(long.class, byte[].class, int.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A {@code (byte[], int, int)Validity} handle to the {@code jdk.incubator.vector} implementation of
+     * {@link #validity(byte[], int, int)}, or null if it is unavailable in this JVM
+     */
+    private static final MethodHandle SIMD = simd();
+
+    private static MethodHandle simd() {
+        try {
+            Class<?> simd = Class.forName("org.rypt.f8.Simd", true, __.class.getClassLoader());
+            return MethodHandles.lookup().findStatic(simd, "validity",
+                    MethodType.methodType(Validity.class, byte[].class, int.class, int.class));
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static boolean isVectorized() {
+        return SIMD != null;
+    }
+
+    static Validity vectorValidity(byte[] b, int off, int to) {
+        MethodHandle simd = SIMD;
+        if (simd == null) {
+            int i = skipAscii(b, off, to);
+            return i == to ? Validity.ASCII : validity(b, i, to);
+        }
+        try {
+            return (Validity)simd.invokeExact(b, off, to);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * A {@code ()Lookup} handle which defines a new hidden class from the bytes of {@link StateLoop}, or null
+     * if this JVM does not support hidden classes (i.e., before Java 15)
+     */
+    private static final MethodHandle COPY_LOOP = copyLoop();
+
+    private static MethodHandle copyLoop() {
+        try (InputStream in = StateLoop.class.getResourceAsStream("StateLoop.class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) != -1; ) {
+                out.write(buf, 0, n);
+            }
+            Class<?> options = Class.forName("[Ljava.lang.invoke.MethodHandles$Lookup$ClassOption;");
+            MethodHandle define = MethodHandles.lookup().unreflect(MethodHandles.Lookup.class
+                    .getMethod("defineHiddenClass", byte[].class, boolean.class, options));
+            return MethodHandles.insertArguments(define, 0, MethodHandles.lookup(), out.toByteArray(), true,
+                    Array.newInstance(options.getComponentType(), 0))
+                    .asType(MethodType.methodType(MethodHandles.Lookup.class));
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static final ClassValue<Utf8Engine> LOOPS = new ClassValue<Utf8Engine>() {
+        @Override
+        protected Utf8Engine computeValue(Class<?> handlerClass) {
+            MethodHandle copy = COPY_LOOP;
+            if (copy == null) {
+                return new StateLoop();
+            }
+            try {
+                MethodHandles.Lookup lookup = (MethodHandles.Lookup)copy.invokeExact();
+                return (Utf8Engine)lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                        .invoke();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+        }
+    };
+
+    /**
+     * Whether handlers of a class may handle ASCII runs in bulk, i.e., whether the class overrides
+     * {@link Utf8ByteHandler#handleAsciiRun(byte[], int, int)} in the same class as, or a subclass of, the class in
+     * which it last overrides {@link Utf8ByteHandler#handle1ByteCodePoint(int)}. Otherwise, a bulk override
+     * inherited from a superclass would bypass the subclass's {@code handle1ByteCodePoint}.
+     */
+    private static final ClassValue<Boolean> BULK_ASCII = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> handlerClass) {
+            try {
+                Class<?> single = handlerClass.getMethod("handle1ByteCodePoint", int.class).getDeclaringClass();
+                Class<?> run = handlerClass.getMethod("handleAsciiRun", byte[].class, int.class, int.class)
+                        .getDeclaringClass();
+                return single.isAssignableFrom(run);
+            } catch (NoSuchMethodException e) {
+                throw new AssertionError(e);
+            }
+        }
+    };
+
+    static boolean isBulkAscii(Class<?> handlerClass) {
+        return BULK_ASCII.get(handlerClass);
+    }
+
+    static boolean isSpecializing() {
+        return COPY_LOOP != null;
+    }
+
+    static Utf8Engine specialize(Class<?> handlerClass) {
+        return LOOPS.get(handlerClass);
+    }
+
+    /**
+     * Skips ASCII bytes 8 at a time.
+     * @return the index of the first negative byte at or after {@code off}, or {@code to} if there is none
+     */
+    static int skipAscii(byte[] b, int off, int to) {
+        MethodHandle longs = LONGS;
+        if (longs != null) {
+            try {
+                for (int end = to - 8; off <= end; off += 8) {
+                    long word = (long)longs.invokeExact(b, off) & NON_ASCII;
+                    if (word != 0) {
+                        return off + (Long.numberOfTrailingZeros(word) >>> 3);
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+        } else {
+            for (int end = to - 8; off <= end; off += 8) {
+                if ((b[off] | b[off + 1] | b[off + 2] | b[off + 3]
+                        | b[off + 4] | b[off + 5] | b[off + 6] | b[off + 7]) < 0) {
+                    break;
+                }
+            }
+        }
+        while (off < to && b[off] >= 0) {
+            off++;
+        }
+        return off;
+    }
+
+    /**
+     * Counts non-continuation bytes 8 at a time, plus 4-byte prefixes if {@code utf16} is true,
+     * which on valid input yields the number of code points or UTF-16 chars, respectively.
+     */
+    static int countChars(byte[] b, int off, int to, boolean utf16) {
+        int n = 0;
+        MethodHandle longs = LONGS;
+        if (longs != null) {
+            try {
+                for (int end = to - 8; off <= end; off += 8) {
+                    long word = (long)longs.invokeExact(b, off);
+                    if ((word & NON_ASCII) == 0) {
+                        n += 8;
+                        continue;
+                    }
+                    n += 8 - Long.bitCount(word & ~(word << 1) & NON_ASCII); //10xxxxxx
+                    if (utf16) {
+                        n += Long.bitCount(word & word << 1 & word << 2 & word << 3 & NON_ASCII); //1111xxxx
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new AssertionError(e);
+            }
+        }
+        for (; off < to; off++) {
+            int b1 = b[off];
+            if (b1 > (byte)0xbf) {
+                n += utf16 && (b1 & 0xf0) == 0xf0 ? 2 : 1;
+            }
+        }
+        return n;
+    }
+
+    private static final int LOCATE_CHUNK = 4096;
+
+    /**
+     * Validates chunks of {@value #LOCATE_CHUNK} bytes, split at code point boundaries, and decodes only the first
+     * chunk which is not valid, so as to locate its malformed sequence at nearly the speed of validation.
+     * A truncated sequence at {@code to} is malformed.
+     * @return the index of the first malformed sequence at or after {@code off}, or {@code to} if there is none
+     */
+    static int firstMalformed(byte[] b, int off, int to) {
+        while (off < to) {
+            int end = to - off > LOCATE_CHUNK ? Parallel.boundary(b, off + LOCATE_CHUNK, to) : to;
+            Validity v = vectorValidity(b, off, end);
+            switch (v) {
+                case ASCII:
+                case UNDERFLOW_R0:
+                    off = end;
+                    continue;
+                case MALFORMED:
+                    for (;;) {
+                        off = skipAscii(b, off, end);
+                        int n = Utf8Charset.sequenceLength(b[off], off + 1 < end ? b[off + 1] : 0,
+                                off + 2 < end ? b[off + 2] : 0, off + 3 < end ? b[off + 3] : 0, end - off);
+                        if (n <= 0) {
+                            return off;
+                        }
+                        off += n;
+                    }
+                default: //the chunk ends with a truncated sequence, which is followed by a boundary or the end
+                    return end - (v.ordinal() - Validity.UNDERFLOW_R0.ordinal());
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Returns the length of the malformed sequence at the specified index, which is reported as a single error
+     * to {@link Utf8ByteHandler}; a truncated sequence at {@code to} is malformed up to {@code to}.
+     */
+    static int malformedLength(byte[] b, int off, int to) {
+        int n = Utf8Charset.sequenceLength(b[off], off + 1 < to ? b[off + 1] : 0,
+                off + 2 < to ? b[off + 2] : 0, off + 3 < to ? b[off + 3] : 0, to - off);
+        return n == 0 ? to - off : -n;
+    }
+
+    static Validity validity(byte[] b, int off, int to) {
         while (off < to) {
             int b1 = b[off++];
             if (b1 >= 0) { //0xxxxxxx
-                do {
-                    handler.handle1ByteCodePoint(b1);
-                } while (off < to && (b1 = b[off++]) >= 0);
-                if (b1 >= 0) {
-                    return 0;
+                if ((off = skipAscii(b, off, to)) == to) {
+                    return Validity.UNDERFLOW_R0;
                 }
+                b1 = b[off++];
             }
             if (b1 < (byte)0xe0) {
                 if (b1 < (byte)0xc2) {
-                    handler.handlePrefixError(b1);
+                    return Validity.MALFORMED;
                 } else if (off < to) { //110xxxxx 10xxxxxx
-                    int b2 = b[off++];
-                    if (b2 > (byte)0xbf) { //is not continuation
-                        handler.handleContinuationError(b1, b2);
-                        off--;
-                    } else {
-                        handler.handle2ByteCodePoint(b1, b2);
+                    if (b[off++] > (byte)0xbf) { //is not continuation
+                        return Validity.MALFORMED;
                     }
                 } else { //110xxxxx
-                    return b1;
+                    return Validity.UNDERFLOW_R1; //1 of 2
                 }
             } else if (b1 < (byte)0xf0) {
                 if (off + 1 < to) { //1110xxxx 10xxxxxx 10xxxxxx
-                    int b2 = b[off++], b3;
-
-                    // Sneaky shortcut for:
-//                    if (b2 > (byte)0xbf
-//                       || b1 == (byte)0xe0 && b2 < (byte)0xa0
-//                       || b1 == (byte)0xed && b2 > (byte)0x9f) {
-                    if (((b1+1^1) + (b2|~0xe0) & 0xee) << 24 >= 0xae000000) {
-                        handler.handleContinuationError(b1, b2);
-                        if (b1 == (byte)0xed && b2 < (byte)0xc0) {
-                            handler.handleIgnoredByte(b2);
-                            if ((b3 = b[off++]) < (byte)0xc0) {
-                                handler.handleIgnoredByte(b3);
-                                off++;
-                            }
-                        }
-                        off--;
-                    } else if ((b3 = b[off++]) > (byte)0xbf) {
-                        handler.handleContinuationError(b1, b2, b3);
-                        off--;
-                    } else {
-                        handler.handle3ByteCodePoint(b1, b2, b3);
+                    if (((b1+1^1) + (b[off++]|~0xe0) & 0xee) << 24 >= 0xae000000
+                            | b[off++] > (byte)0xbf) {
+                        return Validity.MALFORMED;
                     }
                 } else if (off < to) {
-                    int b2 = b[off];
-                    if (((b1+1^1) + (b2|~0xe0) & 0xee) << 24 >= 0xae000000) {
-                        handler.handleContinuationError(b1, b2);
-                        if (b1 == (byte)0xed && b2 < (byte)0xc0) {
-                            handler.handleIgnoredByte(b2);
-                            return Utf8.SURROGATE_PREFIX;
-                        }
+                    if (((b1+1^1) + (b[off]|~0xe0) & 0xee) << 24 >= 0xae000000) {
+                        return Validity.MALFORMED;
                     } else {
-                        return b1 << 8 | b2 & 0xff;
+                        return Validity.UNDERFLOW_R2; //2 of 3
                     }
                 } else {
-                    return b1;
+                    return Validity.UNDERFLOW_R1; //1 of 3
                 }
             } else {
                 if (off + 2 < to) { //11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
-                    int b2 = b[off++], b3, b4;
-                    // Sneaky shortcut for:
-//                    if (b2 > (byte)0xbf || b1 > (byte)0xf4
-//                       || b1 == (byte)0xf0 && b2 < (byte)0x90
-//                       || b1 == (byte)0xf4 && b2 > (byte)0x8f) {
-                    if (b2 > (byte)0xbf || (b1 << 28) + 0x70 + b2 >> 30 != 0) {
-                        if (b1 > (byte)0xf4) {
-                            handler.handlePrefixError(b1);
-                        } else {
-                            handler.handleContinuationError(b1, b2);
-                        }
-                        off--;
-                    } else if ((b3 = b[off++]) > (byte)0xbf) {
-                        handler.handleContinuationError(b1, b2, b3);
-                        off--;
-                    } else if ((b4 = b[off++]) > (byte)0xbf) {
-                        handler.handleContinuationError(b1, b2, b3, b4);
-                        off--;
-                    } else {
-                        handler.handle4ByteCodePoint(b1, b2, b3, b4);
+                    int b2 = b[off++];
+                    if (b2 > (byte)0xbf | (b1 << 28) + 0x70 + b2 >> 30 != 0
+                            | b[off++] > (byte)0xbf | b[off++] > (byte)0xbf) {
+                        return Validity.MALFORMED;
                     }
                 } else if (off < to) {
-                    int b2 = b[off++], b3;
+                    int b2 = b[off++];
                     if (b2 > (byte)0xbf || (b1 << 28) + 0x70 + b2 >> 30 != 0) {
-                        if (b1 > (byte)0xf4) {
-                            handler.handlePrefixError(b1);
-                        } else {
-                            handler.handleContinuationError(b1, b2);
-                        }
-                        off--;
+                        return Validity.MALFORMED;
                     } else if (off < to) {
-                        if ((b3 = b[off]) > (byte)0xbf) {
-                            handler.handleContinuationError(b1, b2, b3);
+                        if (b[off] > (byte)0xbf) {
+                            return Validity.MALFORMED;
                         } else {
-                            return b1 << 16 | b2 << 8 & 0xff00 | b3 & 0xff;
+                            return Validity.UNDERFLOW_R3; //3 of 4
                         }
                     } else {
-                        return b1 << 8 | b2 & 0xff;
+                        return Validity.UNDERFLOW_R2; //2 of 4
                     }
                 } else if (b1 > (byte)0xf4) {
-                    handler.handlePrefixError(b1);
-                    return 0;
+                    return Validity.MALFORMED;
                 } else {
-                    return b1;
+                    return Validity.UNDERFLOW_R1; //1 of 4
                 }
             }
         }
-        return 0;
+        return Validity.UNDERFLOW_R0;
     }
 
+    /**
+     * Decodes bytes into chars until either the bytes are exhausted or the next byte's chars would not fit.
+     * When the chars would not fit, decoding is rolled back to the start of any incomplete sequence, so that
+     * decoding may resume from there in the initial state.
+     * @return the number of chars decoded in the low 32 bits, and either the number of remaining bytes
+     * (if positive) or the final state (if not positive) in the high 32 bits
+     */
+    static long decode(int s, byte[] b, int off, int to, char[] c, int j, int end) {
+        final int start = j;
+        int mark = off;
+        while (off < to) {
+            int b1 = b[off];
+            if (s == 0) {
+                if (b1 >= 0) { //0xxxxxxx
+                    int n = Math.min(to - off, end - j);
+                    if (n == 0) {
+                        break;
+                    }
+                    int lim = off + n;
+                    do {
+                        c[j++] = (char)b1;
+                    } while (++off < lim && (b1 = b[off]) >= 0);
+                    mark = off;
+                    continue;
+                }
+                if (end - j >= 2) {
+                    if (b1 < (byte)0xe0) {
+                        if (b1 >= (byte)0xc2 && off + 1 < to) { //110xxxxx 10xxxxxx
+                            int b2 = b[off + 1];
+                            if (b2 <= (byte)0xbf) {
+                                c[j++] = (char)Utf8.codePoint(b1, b2);
+                                mark = off += 2;
+                                continue;
+                            }
+                        }
+                    } else if (b1 < (byte)0xf0) {
+                        if (off + 2 < to) { //1110xxxx 10xxxxxx 10xxxxxx
+                            int b2 = b[off + 1];
+                            int b3 = b[off + 2];
+                            if (((b1+1^1) + (b2|~0xe0) & 0xee) << 24 < 0xae000000 & b3 <= (byte)0xbf) {
+                                c[j++] = (char)Utf8.codePoint(b1, b2, b3);
+                                mark = off += 3;
+                                continue;
+                            }
+                        }
+                    } else if (b1 <= (byte)0xf4 && off + 3 < to) { //11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+                        int b2 = b[off + 1];
+                        int b3 = b[off + 2];
+                        int b4 = b[off + 3];
+                        if (b2 <= (byte)0xbf & (b1 << 28) + 0x70 + b2 >> 30 == 0
+                                & b3 <= (byte)0xbf & b4 <= (byte)0xbf) {
+                            int cp = Utf8.codePoint(b1, b2, b3, b4);
+                            c[j++] = Character.highSurrogate(cp);
+                            c[j++] = Character.lowSurrogate(cp);
+                            mark = off += 4;
+                            continue;
+                        }
+                    }
+                }
+            }
+            //otherwise, step through a single byte exactly as Utf8.nextState(int, byte, Utf8ByteHandler) does
+            int room = end - j;
+            if (!Utf8.isIncompleteState(s) || b1 >= (byte)0xc0) {
+                int err = Utf8.isIncompleteState(s) ? 1 : 0; //missing continuation
+                if (b1 >= 0) {
+                    if (room < err + 1) {
+                        break;
+                    }
+                    if (err != 0) {
+                        c[j++] = '�';
+                    }
+                    c[j++] = (char)b1;
+                    s = 0;
+                } else if (b1 >= (byte)0xc2 && b1 <= (byte)0xf4) {
+                    if (room < err) {
+                        break;
+                    }
+                    if (err != 0) {
+                        c[j++] = '�';
+                    }
+                    s = b1;
+                    mark = off++;
+                    continue;
+                } else if (s == Utf8.SURROGATE_PREFIX && b1 < (byte)0xc0) {
+                    s = 0; //ignored byte
+                } else {
+                    if (room < err + 1) {
+                        break;
+                    }
+                    if (err != 0) {
+                        c[j++] = '�';
+                    }
+                    c[j++] = '�';
+                    s = 0;
+                }
+            } else if (s >> 5 == -2) {
+                if (room < 1) {
+                    break;
+                }
+                c[j++] = (char)Utf8.codePoint(s, b1);
+                s = 0;
+            } else if (s >> 12 == -2) {
+                if (room < 1) {
+                    break;
+                }
+                c[j++] = (char)Utf8.codePoint(s >> 8, (byte)s, b1);
+                s = 0;
+            } else if (s >> 19 == -2) {
+                if (room < 2) {
+                    break;
+                }
+                int cp = Utf8.codePoint(s >> 16, (byte)(s >> 8), (byte)s, b1);
+                c[j++] = Character.highSurrogate(cp);
+                c[j++] = Character.lowSurrogate(cp);
+                s = 0;
+            } else if ((s & 0xfb) == 0xf0 && ((s << 28) + 0x70 + b1 >> 30) != 0
+                    || s == (byte)0xe0 && b1 < (byte)0xa0) {
+                if (room < 2) {
+                    break;
+                }
+                c[j++] = '�'; //missing continuation
+                c[j++] = '�'; //invalid first byte
+                s = 0;
+            } else {
+                int cc = s << 8 | b1 & 0xff;
+                if (cc >> 5 == 0xffffff6d) {
+                    if (room < 1) {
+                        break;
+                    }
+                    c[j++] = '�';
+                    s = Utf8.SURROGATE_PREFIX;
+                } else {
+                    s = cc;
+                    off++;
+                    continue;
+                }
+            }
+            mark = ++off;
+        }
+        if (off != to) {
+            //the next byte is not a continuation of a surrogate prefix, so SURROGATE_PREFIX is equivalent to 0 here
+            return (long)(to - (Utf8.isIncompleteState(s) ? mark : off)) << 32 | j - start;
+        }
+        return (long)s << 32 | j - start;
+    }
 
-    static Validity validity(byte[] b, int off, int to) {
+    /**
+     * Encodes chars into bytes until either the chars are exhausted or the next char's bytes would not fit.
+     * @return the index after the last byte written, or its bitwise complement if the next char's bytes would not fit
+     */
+    static int encode(CharSequence s, int i, int to, byte[] b, int j, int end, SurrogatePolicy policy) {
+        for (int lim = i + Math.min(to - i, end - j); i < lim; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            b[j++] = (byte)c;
+        }
+        while (i < to) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (j == end) {
+                    return ~j;
+                }
+                b[j++] = (byte)c;
+            } else if (c < 0x800) {
+                if (end - j < 2) {
+                    return ~j;
+                }
+                b[j++] = (byte)(0xc0 | c >> 6);
+                b[j++] = (byte)(0x80 | c & 0x3f);
+            } else if (!Character.isSurrogate(c)) {
+                if (end - j < 3) {
+                    return ~j;
+                }
+                b[j++] = (byte)(0xe0 | c >> 12);
+                b[j++] = (byte)(0x80 | c >> 6 & 0x3f);
+                b[j++] = (byte)(0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(s.charAt(i + 1))) {
+                if (end - j < 4) {
+                    return ~j;
+                }
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[j++] = (byte)(0xf0 | cp >> 18);
+                b[j++] = (byte)(0x80 | cp >> 12 & 0x3f);
+                b[j++] = (byte)(0x80 | cp >> 6 & 0x3f);
+                b[j++] = (byte)(0x80 | cp & 0x3f);
+            } else if (policy == SurrogatePolicy.THROW) {
+                throw new IllegalArgumentException("Unpaired surrogate at index " + i);
+            } else {
+                if (j == end) {
+                    return ~j;
+                }
+                b[j++] = '?';
+            }
+            i++;
+        }
+        return j;
+    }
+
+    static long encodedLength(CharSequence s, int from, int to, SurrogatePolicy policy) {
+        long n = to - from;
+        int i = from;
+        while (i < to && s.charAt(i) < 0x80) {
+            i++;
+        }
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                n += 1;
+            } else if (!Character.isSurrogate(c)) {
+                n += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 2; //4 bytes for 2 chars
+                i++;
+            } else if (policy == SurrogatePolicy.THROW) {
+                throw new IllegalArgumentException("Unpaired surrogate at index " + i);
+            }
+        }
+        return n;
+    }
+
+    static int skipAscii(ByteBuffer b, int off, int to) {
+        for (int end = to - 8; off <= end; off += 8) {
+            if ((b.getLong(off) & NON_ASCII) != 0) {
+                break;
+            }
+        }
+        while (off < to && b.get(off) >= 0) {
+            off++;
+        }
+        return off;
+    }
+
+    static Validity validity(ByteBuffer b, int off, int to) {
         while (off < to) {
-            int b1 = b[off++];
+            int b1 = b.get(off++);
             if (b1 >= 0) { //0xxxxxxx
-                //noinspection StatementWithEmptyBody
-                while (off < to && (b1 = b[off++]) >= 0);
-                if (b1 >= 0) {
+                if ((off = skipAscii(b, off, to)) == to) {
                     return Validity.UNDERFLOW_R0;
                 }
+                b1 = b.get(off++);
             }
             if (b1 < (byte)0xe0) {
                 if (b1 < (byte)0xc2) {
                     return Validity.MALFORMED;
                 } else if (off < to) { //110xxxxx 10xxxxxx
-                    if (b[off++] > (byte)0xbf) { //is not continuation
+                    if (b.get(off++) > (byte)0xbf) { //is not continuation
                         return Validity.MALFORMED;
                     }
                 } else { //110xxxxx
@@ -140,12 +576,12 @@ class __ {
                 }
             } else if (b1 < (byte)0xf0) {
                 if (off + 1 < to) { //1110xxxx 10xxxxxx 10xxxxxx
-                    if (((b1+1^1) + (b[off++]|~0xe0) & 0xee) << 24 >= 0xae000000
-                            | b[off++] > (byte)0xbf) {
+                    if (((b1+1^1) + (b.get(off++)|~0xe0) & 0xee) << 24 >= 0xae000000
+                            | b.get(off++) > (byte)0xbf) {
                         return Validity.MALFORMED;
                     }
                 } else if (off < to) {
-                    if (((b1+1^1) + (b[off]|~0xe0) & 0xee) << 24 >= 0xae000000) {
+                    if (((b1+1^1) + (b.get(off)|~0xe0) & 0xee) << 24 >= 0xae000000) {
                         return Validity.MALFORMED;
                     } else {
                         return Validity.UNDERFLOW_R2; //2 of 3
@@ -155,17 +591,17 @@ class __ {
                 }
             } else {
                 if (off + 2 < to) { //11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
-                    int b2 = b[off++];
+                    int b2 = b.get(off++);
                     if (b2 > (byte)0xbf | (b1 << 28) + 0x70 + b2 >> 30 != 0
-                            | b[off++] > (byte)0xbf | b[off++] > (byte)0xbf) {
+                            | b.get(off++) > (byte)0xbf | b.get(off++) > (byte)0xbf) {
                         return Validity.MALFORMED;
                     }
                 } else if (off < to) {
-                    int b2 = b[off++];
+                    int b2 = b.get(off++);
                     if (b2 > (byte)0xbf || (b1 << 28) + 0x70 + b2 >> 30 != 0) {
                         return Validity.MALFORMED;
                     } else if (off < to) {
-                        if (b[off] > (byte)0xbf) {
+                        if (b.get(off) > (byte)0xbf) {
                             return Validity.MALFORMED;
                         } else {
                             return Validity.UNDERFLOW_R3; //3 of 4
@@ -182,4 +618,54 @@ class __ {
         }
         return Validity.UNDERFLOW_R0;
     }
+
+    static int encode(CharSequence s, int i, int to, ByteBuffer b, int j, int end, SurrogatePolicy policy) {
+        for (int lim = i + Math.min(to - i, end - j); i < lim; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            b.put(j++, (byte)c);
+        }
+        while (i < to) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (j == end) {
+                    return ~j;
+                }
+                b.put(j++, (byte)c);
+            } else if (c < 0x800) {
+                if (end - j < 2) {
+                    return ~j;
+                }
+                b.put(j++, (byte)(0xc0 | c >> 6));
+                b.put(j++, (byte)(0x80 | c & 0x3f));
+            } else if (!Character.isSurrogate(c)) {
+                if (end - j < 3) {
+                    return ~j;
+                }
+                b.put(j++, (byte)(0xe0 | c >> 12));
+                b.put(j++, (byte)(0x80 | c >> 6 & 0x3f));
+                b.put(j++, (byte)(0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(s.charAt(i + 1))) {
+                if (end - j < 4) {
+                    return ~j;
+                }
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b.put(j++, (byte)(0xf0 | cp >> 18));
+                b.put(j++, (byte)(0x80 | cp >> 12 & 0x3f));
+                b.put(j++, (byte)(0x80 | cp >> 6 & 0x3f));
+                b.put(j++, (byte)(0x80 | cp & 0x3f));
+            } else if (policy == SurrogatePolicy.THROW) {
+                throw new IllegalArgumentException("Unpaired surrogate at index " + i);
+            } else {
+                if (j == end) {
+                    return ~j;
+                }
+                b.put(j++, (byte)'?');
+            }
+            i++;
+        }
+        return j;
+    }
 }
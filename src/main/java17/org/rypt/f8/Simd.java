@@ -0,0 +1,169 @@
+package org.rypt.f8;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * A {@code jdk.incubator.vector} implementation of {@link __#validity(byte[], int, int)}, using the
+ * lookup algorithm from Keiser &amp; Lemire, "Validating UTF-8 In Less Than One Instruction Per Byte" (2021).
+ * This class fails to initialize unless the {@code jdk.incubator.vector} module is present.
+ *
+ * @author Hans Brende (hansbrende@apache.org)
+ */
+final class Simd {
+
+    private Simd() { throw new AssertionError(); }
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LENGTH = SPECIES.length();
+
+    //error bits from the paper
+    private static final byte TOO_SHORT = 1;
+    private static final byte TOO_LONG = 1 << 1;
+    private static final byte OVERLONG_3 = 1 << 2;
+    private static final byte TOO_LARGE = 1 << 3;
+    private static final byte SURROGATE = 1 << 4;
+    private static final byte OVERLONG_2 = 1 << 5;
+    private static final byte TOO_LARGE_1000 = 1 << 6;
+    private static final byte OVERLONG_4 = 1 << 6;
+    private static final byte TWO_CONTS = (byte)(1 << 7);
+    private static final byte CARRY = TOO_SHORT | TOO_LONG | TWO_CONTS;
+
+    private static final ByteVector BYTE_1_HIGH = table(
+            //0_______ ________ <ASCII in byte 1>
+            TOO_LONG, TOO_LONG, TOO_LONG, TOO_LONG,
+            TOO_LONG, TOO_LONG, TOO_LONG, TOO_LONG,
+            //10______ ________ <continuation in byte 1>
+            TWO_CONTS, TWO_CONTS, TWO_CONTS, TWO_CONTS,
+            //1100____ ________ <two byte lead in byte 1>
+            TOO_SHORT | OVERLONG_2,
+            //1101____ ________ <two byte lead in byte 1>
+            TOO_SHORT,
+            //1110____ ________ <three byte lead in byte 1>
+            TOO_SHORT | OVERLONG_3 | SURROGATE,
+            //1111____ ________ <four+ byte lead in byte 1>
+            TOO_SHORT | TOO_LARGE | TOO_LARGE_1000 | OVERLONG_4);
+
+    private static final ByteVector BYTE_1_LOW = table(
+            //____0000 ________
+            CARRY | OVERLONG_3 | OVERLONG_2 | OVERLONG_4,
+            //____0001 ________
+            CARRY | OVERLONG_2,
+            //____001_ ________
+            CARRY,
+            CARRY,
+            //____0100 ________
+            CARRY | TOO_LARGE,
+            //____0101 ________
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            //____011_ ________
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            //____1___ ________
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            //____1101 ________
+            CARRY | TOO_LARGE | TOO_LARGE_1000 | SURROGATE,
+            CARRY | TOO_LARGE | TOO_LARGE_1000,
+            CARRY | TOO_LARGE | TOO_LARGE_1000);
+
+    private static final ByteVector BYTE_2_HIGH = table(
+            //________ 0_______ <ASCII in byte 2>
+            TOO_SHORT, TOO_SHORT, TOO_SHORT, TOO_SHORT,
+            TOO_SHORT, TOO_SHORT, TOO_SHORT, TOO_SHORT,
+            //________ 1000____
+            TOO_LONG | OVERLONG_2 | TWO_CONTS | OVERLONG_3 | TOO_LARGE_1000 | OVERLONG_4,
+            //________ 1001____
+            TOO_LONG | OVERLONG_2 | TWO_CONTS | OVERLONG_3 | TOO_LARGE,
+            //________ 101_____
+            TOO_LONG | OVERLONG_2 | TWO_CONTS | SURROGATE | TOO_LARGE,
+            TOO_LONG | OVERLONG_2 | TWO_CONTS | SURROGATE | TOO_LARGE,
+            //________ 11______
+            TOO_SHORT, TOO_SHORT, TOO_SHORT, TOO_SHORT);
+
+    /**
+     * Lanes whose value, if exceeded, indicates a multi-byte sequence that is incomplete at the end of a vector
+     */
+    private static final ByteVector INCOMPLETE = incomplete();
+
+    static {
+        if (LENGTH < 16) {
+            throw new UnsupportedOperationException("vector species too small: " + SPECIES);
+        }
+    }
+
+    private static ByteVector table(int... values) {
+        byte[] lanes = new byte[LENGTH];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = (byte)values[i & 15];
+        }
+        return ByteVector.fromArray(SPECIES, lanes, 0);
+    }
+
+    private static ByteVector incomplete() {
+        byte[] lanes = new byte[LENGTH];
+        Arrays.fill(lanes, (byte)0xff);
+        lanes[LENGTH - 3] = (byte)(0xf0 - 1);
+        lanes[LENGTH - 2] = (byte)(0xe0 - 1);
+        lanes[LENGTH - 1] = (byte)(0xc0 - 1);
+        return ByteVector.fromArray(SPECIES, lanes, 0);
+    }
+
+    private static ByteVector lookup(ByteVector table, ByteVector nibbles) {
+        return table.rearrange(nibbles.toShuffle());
+    }
+
+    static Validity validity(byte[] b, int from, int to) {
+        int off = from;
+        int end = off + SPECIES.loopBound(to - off);
+        ByteVector prev = ByteVector.zero(SPECIES);
+        boolean ascii = true;
+        boolean incomplete = false;
+        for (; off < end; off += LENGTH) {
+            ByteVector input = ByteVector.fromArray(SPECIES, b, off);
+            if (!input.compare(VectorOperators.LT, 0).anyTrue()) {
+                if (incomplete) {
+                    return Validity.MALFORMED;
+                }
+                prev = input;
+                continue;
+            }
+            ascii = false;
+
+            ByteVector prev1 = prev.slice(LENGTH - 1, input);
+            ByteVector specialCases = lookup(BYTE_1_HIGH, prev1.lanewise(VectorOperators.LSHR, 4))
+                    .and(lookup(BYTE_1_LOW, prev1.and((byte)0x0f)))
+                    .and(lookup(BYTE_2_HIGH, input.lanewise(VectorOperators.LSHR, 4)));
+
+            ByteVector prev2 = prev.slice(LENGTH - 2, input);
+            ByteVector prev3 = prev.slice(LENGTH - 3, input);
+            ByteVector must23 = ByteVector.zero(SPECIES).blend((byte)0x80,
+                    prev2.compare(VectorOperators.UNSIGNED_GE, (byte)0xe0)
+                            .or(prev3.compare(VectorOperators.UNSIGNED_GE, (byte)0xf0)));
+
+            if (must23.lanewise(VectorOperators.XOR, specialCases).compare(VectorOperators.NE, 0).anyTrue()) {
+                return Validity.MALFORMED;
+            }
+            incomplete = input.compare(VectorOperators.UNSIGNED_GT, INCOMPLETE).anyTrue();
+            prev = input;
+        }
+
+        //finish the tail from the start of the last (possibly incomplete) sequence
+        int start = off;
+        for (int i = off - 1; i >= Math.max(from, off - 3); i--) {
+            if (b[i] >= (byte)0xc0) { //is not continuation
+                start = i;
+                break;
+            }
+        }
+        Validity v = Utf8.validity(b, start, to);
+        return v == Validity.ASCII && !ascii ? Validity.UNDERFLOW_R0 : v;
+    }
+
+}
@@ -0,0 +1,142 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the word-at-a-time ASCII scan against the byte-at-a-time loop it replaced.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class AsciiBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int length;
+
+    @Param
+    public Utf8Benchmark.Range chars;
+
+    @Benchmark
+    public Validity testLoopValidity() {
+        byte[] b = chars.bytes;
+        for (int i = 0; i < length; i++) {
+            if (b[i] < 0) {
+                return loopValidity(b, i, length);
+            }
+        }
+        return Validity.ASCII;
+    }
+
+    @Benchmark
+    public Validity testSwarValidity() {
+        return Utf8.validity(chars.bytes, 0, length);
+    }
+
+    @Benchmark
+    public int testLoopAsciiPrefixLength() {
+        byte[] b = chars.bytes;
+        int i = 0;
+        while (i < length && b[i] >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public int testSwarAsciiPrefixLength() {
+        return Utf8.asciiPrefixLength(chars.bytes, 0, length);
+    }
+
+    /**
+     * The validation loop as it was before ASCII runs were skipped a word at a time, which {@link __} no longer
+     * contains, so that {@link #testLoopValidity()} measures the old code rather than the new
+     */
+    private static Validity loopValidity(byte[] b, int off, int to) {
+        while (off < to) {
+            int b1 = b[off++];
+            if (b1 >= 0) { //0xxxxxxx
+                //noinspection StatementWithEmptyBody
+                while (off < to && (b1 = b[off++]) >= 0);
+                if (b1 >= 0) {
+                    return Validity.UNDERFLOW_R0;
+                }
+            }
+            if (b1 < (byte)0xe0) {
+                if (b1 < (byte)0xc2) {
+                    return Validity.MALFORMED;
+                } else if (off < to) { //110xxxxx 10xxxxxx
+                    if (b[off++] > (byte)0xbf) { //is not continuation
+                        return Validity.MALFORMED;
+                    }
+                } else { //110xxxxx
+                    return Validity.UNDERFLOW_R1; //1 of 2
+                }
+            } else if (b1 < (byte)0xf0) {
+                if (off + 1 < to) { //1110xxxx 10xxxxxx 10xxxxxx
+                    if (((b1+1^1) + (b[off++]|~0xe0) & 0xee) << 24 >= 0xae000000
+                            | b[off++] > (byte)0xbf) {
+                        return Validity.MALFORMED;
+                    }
+                } else if (off < to) {
+                    if (((b1+1^1) + (b[off]|~0xe0) & 0xee) << 24 >= 0xae000000) {
+                        return Validity.MALFORMED;
+                    } else {
+                        return Validity.UNDERFLOW_R2; //2 of 3
+                    }
+                } else {
+                    return Validity.UNDERFLOW_R1; //1 of 3
+                }
+            } else {
+                if (off + 2 < to) { //11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+                    int b2 = b[off++];
+                    if (b2 > (byte)0xbf | (b1 << 28) + 0x70 + b2 >> 30 != 0
+                            | b[off++] > (byte)0xbf | b[off++] > (byte)0xbf) {
+                        return Validity.MALFORMED;
+                    }
+                } else if (off < to) {
+                    int b2 = b[off++];
+                    if (b2 > (byte)0xbf || (b1 << 28) + 0x70 + b2 >> 30 != 0) {
+                        return Validity.MALFORMED;
+                    } else if (off < to) {
+                        if (b[off] > (byte)0xbf) {
+                            return Validity.MALFORMED;
+                        } else {
+                            return Validity.UNDERFLOW_R3; //3 of 4
+                        }
+                    } else {
+                        return Validity.UNDERFLOW_R2; //2 of 4
+                    }
+                } else if (b1 > (byte)0xf4) {
+                    return Validity.MALFORMED;
+                } else {
+                    return Validity.UNDERFLOW_R1; //1 of 4
+                }
+            }
+        }
+        return Validity.UNDERFLOW_R0;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,93 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the allocation rate of concurrently validating small streams with pooled buffers;
+ * the GC profiler reports {@code gc.alloc.rate.norm} in bytes/op.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+@Threads(16)
+public class BufferPoolBenchmark {
+
+    @Param({"MOSTLY_ASCII", "ASIAN"})
+    public Utf8Benchmark.Range chars;
+
+    /**
+     * The time spent between calls, and in each read, so that concurrent calls overlap as in a server
+     */
+    private static final long THINK_TIME = 100_000;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = Arrays.copyOf(chars.bytes, 1024);
+    }
+
+    /**
+     * Blocks briefly in each read, like a socket stream, so that concurrent calls hold their buffers at the same time
+     */
+    private static class BlockingInputStream extends ByteArrayInputStream {
+        BlockingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            LockSupport.parkNanos(THINK_TIME);
+            return super.read(b, off, len);
+        }
+    }
+
+    @Benchmark
+    public Validity testValidity() throws IOException {
+        LockSupport.parkNanos(THINK_TIME);
+        return Utf8.validity(new BlockingInputStream(bytes));
+    }
+
+    @State(Scope.Thread)
+    public static class Stats {
+        final Utf8Statistics stats = new Utf8Statistics();
+    }
+
+    @Benchmark
+    public int testNextState(Stats s) throws IOException {
+        LockSupport.parkNanos(THINK_TIME);
+        return Utf8.nextState(0, new BlockingInputStream(bytes), s.stats);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,70 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares validating and transferring heap versus direct byte buffers.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class ByteBufferBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int length;
+
+    @Param
+    public Utf8Benchmark.Range chars;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private ByteBuffer buf;
+
+    private final Utf8Statistics stats = new Utf8Statistics();
+
+    @Setup
+    public void setup() {
+        buf = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        buf.put(chars.bytes, 0, length).clear();
+    }
+
+    @Benchmark
+    public Validity testValidity() {
+        return Utf8.validity(buf);
+    }
+
+    @Benchmark
+    public long testNextState() {
+        stats.reset();
+        buf.clear();
+        Utf8.finish(Utf8.nextState(0, buf, stats), stats);
+        return stats.countCodePoints();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
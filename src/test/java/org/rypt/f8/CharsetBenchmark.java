@@ -0,0 +1,88 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Utf8Charset} against {@link StandardCharsets#UTF_8} on the {@link Utf8Benchmark.Range} data.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class CharsetBenchmark {
+
+    public enum Utf8Decoder {
+        f8(Utf8Charset.INSTANCE),
+        jdk(StandardCharsets.UTF_8);
+
+        final Charset charset;
+
+        Utf8Decoder(Charset charset) {
+            this.charset = charset;
+        }
+    }
+
+    @Param
+    public Utf8Benchmark.Range chars;
+
+    @Param
+    public Utf8Decoder utf8Decoder;
+
+    private ByteBuffer in;
+    private CharBuffer out;
+    private CharsetDecoder decoder;
+
+    @Setup
+    public void setup() {
+        in = ByteBuffer.wrap(chars.bytes);
+        out = CharBuffer.allocate(chars.bytes.length);
+        decoder = utf8Decoder.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Benchmark
+    public int testDecoder() {
+        in.clear();
+        out.clear();
+        decoder.reset();
+        decoder.decode(in, out, true);
+        decoder.flush(out);
+        return out.position();
+    }
+
+    @Benchmark
+    public int testNewString() {
+        return new String(chars.bytes, utf8Decoder.charset).length();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
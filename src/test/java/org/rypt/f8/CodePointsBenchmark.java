@@ -0,0 +1,64 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares streaming code points with {@link Utf8#codePoints(byte[], int, int)}, sequentially and in parallel,
+ * against decoding into a string first.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class CodePointsBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = chars.bytes;
+    }
+
+    @Benchmark
+    public long testCodePoints() {
+        return Utf8.codePoints(bytes, 0, bytes.length).filter(Character::isLetter).count();
+    }
+
+    @Benchmark
+    public long testParallelCodePoints() {
+        return Utf8.codePoints(bytes, 0, bytes.length).parallel().filter(Character::isLetter).count();
+    }
+
+    @Benchmark
+    public long testStringCodePoints() {
+        return Utf8.decodeToString(bytes, 0, bytes.length).codePoints().filter(Character::isLetter).count();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .jvmArgsAppend(Utf8Benchmark.vectorArgs())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,93 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares validating a column of 1M rows of 10 to 50 bytes with {@link Utf8#validateColumn(byte[], int[], int)}
+ * against calling {@link Utf8#validity(byte[], int, int)} for each row.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class ColumnBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM", "INVALID"})
+    public Utf8Benchmark.Range chars;
+
+    private static final int ROWS = 1 << 20;
+
+    private byte[] data;
+    private int[] offsets;
+    private int[] codePoints;
+
+    @Setup
+    public void setup() {
+        byte[] b = chars.bytes;
+        Random random = new Random(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        offsets = new int[ROWS + 1];
+        codePoints = new int[ROWS];
+        int pos = 0;
+        for (int i = 0; i < ROWS; i++) {
+            int len = 10 + random.nextInt(41);
+            if (pos + len + 3 > b.length) {
+                pos = 0;
+            }
+            //rows are cut at code point boundaries, so that valid text makes valid rows
+            int end = Parallel.boundary(b, pos + len, b.length);
+            out.write(b, pos, end - pos);
+            offsets[i + 1] = out.size();
+            pos = end;
+        }
+        data = out.toByteArray();
+    }
+
+    @Benchmark
+    public long[] testPerRow() {
+        long[] bitmap = new long[ROWS + 63 >>> 6];
+        for (int i = 0; i < ROWS; i++) {
+            if (Utf8.validity(data, offsets[i], offsets[i + 1]).isFullyValid()) {
+                bitmap[i >>> 6] |= 1L << i;
+            }
+        }
+        return bitmap;
+    }
+
+    @Benchmark
+    public long[] testColumn() {
+        return Utf8.validateColumn(data, offsets, ROWS);
+    }
+
+    @Benchmark
+    public long[] testColumnCodePoints() {
+        return Utf8.validateColumn(data, offsets, ROWS, codePoints);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .jvmArgsAppend(Utf8Benchmark.vectorArgs())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
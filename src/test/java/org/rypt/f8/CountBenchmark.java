@@ -0,0 +1,67 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Utf8#countCodePoints(byte[], int, int)} and {@link Utf8#utf16Length(byte[], int, int)}
+ * against a full {@link Utf8Statistics} pass.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class CountBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = chars.bytes;
+    }
+
+    @Benchmark
+    public int testCountCodePoints() {
+        return Utf8.countCodePoints(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public int testUtf16Length() {
+        return Utf8.utf16Length(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public long testStatistics() {
+        Utf8Statistics stats = new Utf8Statistics();
+        stats.write(bytes, 0, bytes.length);
+        stats.close();
+        return stats.countCodePoints();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .jvmArgsAppend(Utf8Benchmark.vectorArgs())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
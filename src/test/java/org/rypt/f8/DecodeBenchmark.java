@@ -0,0 +1,79 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding into a reused, fixed-size char array against decoding into a growing {@link StringBuilder}.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+
+    private final char[] dst = new char[8192];
+
+    @Setup
+    public void setup() {
+        bytes = chars.bytes;
+    }
+
+    @Benchmark
+    public int testDecode() {
+        int state = 0;
+        int from = 0;
+        int to = bytes.length;
+        int count = 0;
+        long result;
+        do {
+            result = Utf8.decode(state, bytes, from, to, dst, 0, dst.length);
+            count += Utf8.decodedChars(result);
+            state = Utf8.decodedState(result);
+            from = to - Utf8.remainingBytes(result);
+        } while (from != to);
+        return count;
+    }
+
+    @Benchmark
+    public int testStringBuilder() {
+        Utf8StringBuilder sb = new Utf8StringBuilder();
+        sb.write(bytes, 0, bytes.length);
+        sb.close();
+        return sb.length();
+    }
+
+    @Benchmark
+    public int testJdk() {
+        return new String(bytes, StandardCharsets.UTF_8).length();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
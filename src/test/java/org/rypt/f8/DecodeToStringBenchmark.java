@@ -0,0 +1,67 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Utf8#decodeToString(byte[], int, int)} against {@link Utf8StringBuilder} and the JDK.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class DecodeToStringBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM", "INVALID"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = chars.bytes;
+    }
+
+    @Benchmark
+    public String testDecodeToString() {
+        return Utf8.decodeToString(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public String testStringBuilder() {
+        Utf8StringBuilder sb = new Utf8StringBuilder();
+        sb.write(bytes, 0, bytes.length);
+        sb.close();
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String testJdk() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .jvmArgsAppend(Utf8Benchmark.vectorArgs())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
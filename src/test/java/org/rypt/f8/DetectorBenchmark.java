@@ -0,0 +1,61 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares sniffing a stream with {@link Utf8Detector} against collecting {@link Utf8Statistics} for the whole stream.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class DetectorBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = chars.bytes;
+    }
+
+    @Benchmark
+    public boolean testDetector() throws IOException {
+        return new Utf8Detector().detect(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public boolean testStatistics() throws IOException {
+        Utf8Statistics stats = new Utf8Statistics();
+        Utf8.transfer(new ByteArrayInputStream(bytes), stats);
+        return stats.looksLikeUtf8();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
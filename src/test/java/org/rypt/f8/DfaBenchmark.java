@@ -0,0 +1,74 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the branchy state machine against the table-driven DFA of {@link Utf8#dfa()}, for both validation and
+ * decoding into {@link Utf8Statistics}.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class DfaBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM", "INVALID"})
+    public Utf8Benchmark.Range chars;
+
+    private static final Utf8Engine DFA = Utf8.dfa();
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = chars.bytes;
+    }
+
+    @Benchmark
+    public Validity testBranchyValidity() {
+        return Utf8.validity(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public Validity testDfaValidity() {
+        return DFA.validity(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public long testBranchyStatistics() {
+        Utf8Statistics stats = new Utf8Statistics();
+        Utf8.nextState(0, bytes, 0, bytes.length, stats);
+        return stats.countCodePoints();
+    }
+
+    @Benchmark
+    public long testDfaStatistics() {
+        Utf8Statistics stats = new Utf8Statistics();
+        DFA.nextState(0, bytes, 0, bytes.length, stats);
+        return stats.countCodePoints();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
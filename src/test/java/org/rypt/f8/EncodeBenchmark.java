@@ -0,0 +1,83 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding into a reused byte array or direct buffer against {@link String#getBytes(java.nio.charset.Charset)},
+ * and {@link Utf8#encodedLength(CharSequence)} against Guava's {@code Utf8.encodedLength}.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class EncodeBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM"})
+    public Utf8Benchmark.Range chars;
+
+    private String string;
+
+    private byte[] dst;
+
+    private ByteBuffer direct;
+
+    @Setup
+    public void setup() {
+        string = new String(chars.bytes, StandardCharsets.UTF_8);
+        dst = new byte[string.length() * 3];
+        direct = ByteBuffer.allocateDirect(dst.length);
+    }
+
+    @Benchmark
+    public int testEncode() {
+        return Utf8.encode(string, 0, string.length(), dst, 0);
+    }
+
+    @Benchmark
+    public int testEncodeDirect() {
+        direct.clear();
+        Utf8.encode(string, 0, string.length(), direct);
+        return direct.position();
+    }
+
+    @Benchmark
+    public int testJdk() {
+        return string.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public int testEncodedLength() {
+        return Utf8.encodedLength(string);
+    }
+
+    @Benchmark
+    public int testGuavaEncodedLength() {
+        return com.google.common.base.Utf8.encodedLength(string);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,80 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of transferring bytes to each of the built-in handlers, after all of them
+ * have passed through the engine so that its call sites are megamorphic.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class HandlerBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+
+    private final Utf8Statistics stats = new Utf8Statistics();
+    private final Utf8StringBuilder builder = new Utf8StringBuilder();
+    private final StringBuilder appendable = new StringBuilder();
+    private final Utf8Handler<IOException> adapter = Utf8Handler.of(appendable);
+
+    @Setup
+    public void setup() throws IOException {
+        bytes = chars.bytes;
+        for (int i = 0; i < 1000; i++) {
+            testStatistics();
+            testStringBuilder();
+            testAppendable();
+        }
+    }
+
+    @Benchmark
+    public long testStatistics() {
+        stats.reset();
+        Utf8.finish(Utf8.nextState(0, bytes, 0, bytes.length, stats), stats);
+        return stats.countCodePoints();
+    }
+
+    @Benchmark
+    public int testStringBuilder() {
+        builder.reset();
+        Utf8.finish(Utf8.nextState(0, bytes, 0, bytes.length, builder), builder);
+        return builder.length();
+    }
+
+    @Benchmark
+    public int testAppendable() throws IOException {
+        appendable.setLength(0);
+        Utf8.finish(Utf8.nextState(0, bytes, 0, bytes.length, adapter), adapter);
+        return appendable.length();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -44,4 +44,17 @@ public class Jdk {
 
         throw new AssertionError(result);
     }
+
+    /**
+     * Returns the offset of the first malformed sequence, treating a truncated sequence at the end as malformed,
+     * or -1 if the bytes are valid
+     */
+    public static long malformedOffset(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        CoderResult result = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(in, CharBuffer.allocate(bytes.length), true);
+        return result.isMalformed() ? in.position() : -1;
+    }
 }
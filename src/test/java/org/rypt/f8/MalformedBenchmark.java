@@ -0,0 +1,71 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares locating a single malformed byte, 90% of the way into otherwise valid input, with
+ * {@link Utf8#firstMalformedIndex(byte[], int, int)} and {@link Utf8#malformedRanges(byte[], int, int)}
+ * against plain validation and the JDK decoder.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class MalformedBenchmark {
+
+    @Param({"LATIN", "ASIAN"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = chars.bytes.clone();
+        bytes[bytes.length / 10 * 9] = (byte)0xff;
+    }
+
+    @Benchmark
+    public Validity testValidity() {
+        return Utf8.validity(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public int testFirstMalformedIndex() {
+        return Utf8.firstMalformedIndex(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public int[] testMalformedRanges() {
+        return Utf8.malformedRanges(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public long testJdk() {
+        return Jdk.malformedOffset(bytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .jvmArgsAppend(Utf8Benchmark.vectorArgs())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,98 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link Utf8#parallelValidity(byte[], int, int)} and {@link Utf8Statistics#parallelOf(byte[])}
+ * scale with the number of threads.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class ParallelBenchmark {
+
+    @Param({"67108864"})
+    public int length;
+
+    @Param({"MOSTLY_ASCII", "ASIAN", "RANDOM"})
+    public Utf8Benchmark.Range chars;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int threads;
+
+    private byte[] bytes;
+
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        byte[] chunk = chars.bytes;
+        int n = chunk.length;
+        switch (Utf8.validity(chunk, 0, n)) { //repeat whole code points only
+            case UNDERFLOW_R3: n--;
+            case UNDERFLOW_R2: n--;
+            case UNDERFLOW_R1: n--;
+        }
+        bytes = new byte[length - length % n];
+        for (int i = 0; i < bytes.length; i += n) {
+            System.arraycopy(chunk, 0, bytes, i, n);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Validity testSequential() {
+        return Utf8.validity(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public Validity testParallel() {
+        return pool.submit(() -> Utf8.parallelValidity(bytes, 0, bytes.length)).join();
+    }
+
+    @Benchmark
+    public long testSequentialStatistics() {
+        Utf8Statistics stats = new Utf8Statistics();
+        stats.write(bytes);
+        stats.close();
+        return stats.countInvalid();
+    }
+
+    @Benchmark
+    public long testParallelStatistics() {
+        return pool.submit(() -> Utf8Statistics.parallelOf(bytes)).join().countInvalid();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .jvmArgsAppend(Utf8Benchmark.vectorArgs())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
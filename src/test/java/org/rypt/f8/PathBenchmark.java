@@ -0,0 +1,101 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the memory-mapped {@link Path} methods against their {@link InputStream} counterparts on a large file.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class PathBenchmark {
+
+    @Param({"1073741824"})
+    public long size;
+
+    @Param({"MOSTLY_ASCII", "ASIAN"})
+    public Utf8Benchmark.Range chars;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("f8", ".txt");
+        byte[] bytes = chars.bytes;
+        int length = bytes.length;
+        switch (Utf8.validity(bytes, 0, length)) { //repeat whole code points only
+            case UNDERFLOW_R3: length--;
+            case UNDERFLOW_R2: length--;
+            case UNDERFLOW_R1: length--;
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += length) {
+                out.write(bytes, 0, (int)Math.min(length, size - written));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Validity testPathValidity() throws IOException {
+        return Utf8.validity(file);
+    }
+
+    @Benchmark
+    public Validity testStreamValidity() throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            return Utf8.validity(is);
+        }
+    }
+
+    @Benchmark
+    public long testPathTransfer() throws IOException {
+        Utf8Statistics stats = new Utf8Statistics();
+        Utf8.transfer(file, stats);
+        return stats.countCodePoints();
+    }
+
+    @Benchmark
+    public long testStreamTransfer() throws IOException {
+        Utf8Statistics stats = new Utf8Statistics();
+        try (InputStream is = Files.newInputStream(file)) {
+            Utf8.transfer(is, stats);
+        }
+        return stats.countCodePoints();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
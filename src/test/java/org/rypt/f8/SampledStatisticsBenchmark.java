@@ -0,0 +1,76 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares sampling the statistics of a 64 MB file with {@link Utf8SampledStatistics} against scanning the whole
+ * file with {@link Utf8Statistics#parallelOf(Path)}.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class SampledStatisticsBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM", "INVALID"})
+    public Utf8Benchmark.Range chars;
+
+    private Path file;
+    private final Random random = new Random();
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("f8", ".txt");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < 64; i++) {
+                out.write(chars.bytes);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public long testSampled() throws IOException {
+        return Utf8SampledStatistics.of(file, Utf8SampledStatistics.DEFAULT_WINDOWS,
+                Utf8SampledStatistics.DEFAULT_WINDOW_SIZE, random).countCodePoints();
+    }
+
+    @Benchmark
+    public long testParallel() throws IOException {
+        return Utf8Statistics.parallelOf(file).countCodePoints();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
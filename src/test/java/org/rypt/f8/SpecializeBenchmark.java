@@ -0,0 +1,117 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding with the shared loop, after its handler calls have been made megamorphic by handlers of
+ * several classes, against decoding with a loop specialized by {@link Utf8#specialize(Class)}: both for
+ * {@link Utf8Statistics}, which overrides every handler event, and for a plain {@link Utf8Handler}, which inherits
+ * most of them from interface default methods.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class SpecializeBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN", "RANDOM", "INVALID"})
+    public Utf8Benchmark.Range chars;
+
+    private static final Utf8Engine ENGINE = Utf8.specialize(Utf8Statistics.class);
+
+    //Counter inherits most events from the defaults of Utf8Handler, whose calls to handleCodePoint stay megamorphic
+    private static final Utf8Engine COUNTER_ENGINE = Utf8.specialize(Counter.class);
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = chars.bytes;
+        //pollute the type profile of the shared loop before it is compiled
+        for (int i = 0; i < 20; i++) {
+            Utf8.nextState(0, bytes, 0, bytes.length, new Utf8Statistics());
+            Utf8.nextState(0, bytes, 0, bytes.length, new Utf8StringBuilder());
+            Utf8.nextState(0, bytes, 0, bytes.length, new Counter());
+            Utf8.nextState(0, bytes, 0, bytes.length, new Validator());
+        }
+    }
+
+    @Benchmark
+    public long testShared() {
+        Utf8Statistics stats = new Utf8Statistics();
+        Utf8.nextState(0, bytes, 0, bytes.length, stats);
+        return stats.countCodePoints();
+    }
+
+    @Benchmark
+    public long testSpecialized() {
+        Utf8Statistics stats = new Utf8Statistics();
+        ENGINE.nextState(0, bytes, 0, bytes.length, stats);
+        return stats.countCodePoints();
+    }
+
+    @Benchmark
+    public long testSharedCounter() {
+        Counter counter = new Counter();
+        Utf8.nextState(0, bytes, 0, bytes.length, counter);
+        return counter.count;
+    }
+
+    @Benchmark
+    public long testSpecializedCounter() {
+        Counter counter = new Counter();
+        COUNTER_ENGINE.nextState(0, bytes, 0, bytes.length, counter);
+        return counter.count;
+    }
+
+    private static class Counter implements Utf8Handler<RuntimeException> {
+        long count;
+
+        @Override
+        public void handleCodePoint(int codePoint) {
+            count++;
+        }
+
+        @Override
+        public void handleError() {
+            count--;
+        }
+    }
+
+    private static class Validator implements Utf8Handler<RuntimeException> {
+        boolean valid = true;
+
+        @Override
+        public void handleCodePoint(int codePoint) {
+        }
+
+        @Override
+        public void handleError() {
+            valid = false;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
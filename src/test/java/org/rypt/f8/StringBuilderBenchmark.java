@@ -0,0 +1,105 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a string with {@link Utf8StringBuilder} in compact (Latin-1) mode against UTF-16 mode, from
+ * either one write of all bytes or many small writes, as when streaming.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class StringBuilderBenchmark {
+
+    /**
+     * EUROPEAN is Latin-1 text, mostly ASCII with about 1 in 16 chars in the range U+00A0-U+00FF
+     */
+    @Param({"EUROPEAN", "LATIN", "ASIAN"})
+    public String chars;
+
+    //the size of each write when streaming
+    private static final int CHUNK = 256;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        if (chars.equals("EUROPEAN")) {
+            Random random = new Random(0);
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 1 << 20) {
+                sb.append(random.nextInt(16) == 0 ? (char)(0xa0 + random.nextInt(0x60)) : (char)(0x20 + random.nextInt(0x5f)));
+            }
+            bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            bytes = Utf8Benchmark.Range.valueOf(chars).bytes;
+        }
+    }
+
+    @Benchmark
+    public String testUtf16() {
+        Utf8StringBuilder sb = new Utf8StringBuilder();
+        sb.write(bytes, 0, bytes.length);
+        sb.close();
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String testCompact() {
+        Utf8StringBuilder sb = new Utf8StringBuilder(true);
+        sb.write(bytes, 0, bytes.length);
+        sb.close();
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String testUtf16Streamed() {
+        return streamed(new Utf8StringBuilder());
+    }
+
+    @Benchmark
+    public String testCompactStreamed() {
+        return streamed(new Utf8StringBuilder(true));
+    }
+
+    private String streamed(Utf8StringBuilder sb) {
+        byte[] bytes = this.bytes;
+        for (int i = 0; i < bytes.length; i += CHUNK) {
+            sb.write(bytes, i, Math.min(CHUNK, bytes.length - i));
+        }
+        sb.close();
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String testJdk() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -122,6 +122,18 @@ public class Utf8Benchmark {
                 return Utf8.validity(bytes, 0, len).isValidOrTruncated();
             }
         },
+        f8simd {
+            @Override
+            boolean isValid(InputStream in) throws IOException {
+                byte[] bytes = copy(in, new ByteArrayOutputStream()).toByteArray();
+                return Utf8.vectorValidity(bytes, 0, bytes.length).isValidOrTruncated();
+            }
+
+            @Override
+            boolean isValid(byte[] bytes, int len) {
+                return Utf8.vectorValidity(bytes, 0, len).isValidOrTruncated();
+            }
+        },
         jdk {
             @Override
             boolean isValid(InputStream in) throws IOException {
@@ -175,6 +187,7 @@ public class Utf8Benchmark {
                 .warmupIterations(5)
                 .measurementIterations(5)
                 .forks(1)
+                .jvmArgsAppend(vectorArgs())
                 .build();
 
         new Runner(opt).run();
@@ -182,6 +195,12 @@ public class Utf8Benchmark {
 
 
 
+    static String[] vectorArgs() {
+        String version = System.getProperty("java.specification.version");
+        return version.startsWith("1.") || Integer.parseInt(version) < 17
+                ? new String[0] : new String[]{"--add-modules", "jdk.incubator.vector"};
+    }
+
     private static <O extends OutputStream> O copy(InputStream in, O out) throws IOException {
         byte[] buffer = new byte[4096];
         int n;
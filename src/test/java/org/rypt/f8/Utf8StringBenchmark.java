@@ -0,0 +1,95 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the memory footprint, construction and random access of {@link Utf8String} against {@link String}.
+ * The footprint is the {@code gc.alloc.rate.norm} of the footprint benchmarks, which copy a value without its first
+ * char, allocating exactly what the copy retains. (Decoding a {@link String} from UTF-8 allocates more than it
+ * retains, as the JDK trims a worst-case buffer.)
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class Utf8StringBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+    private String string;
+    private Utf8String utf8String;
+
+    @Setup
+    public void setup() {
+        string = Utf8.decodeToString(chars.bytes, 0, chars.bytes.length);
+        bytes = string.getBytes(StandardCharsets.UTF_8);
+        utf8String = Utf8String.valueOf(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public String testNewString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Utf8String testNewUtf8String() {
+        return Utf8String.valueOf(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public String testStringFootprint() {
+        return string.substring(1);
+    }
+
+    @Benchmark
+    public CharSequence testUtf8StringFootprint() {
+        return utf8String.subSequence(1, utf8String.length());
+    }
+
+    @Benchmark
+    public int testStringCharAt() {
+        return charAt(string);
+    }
+
+    @Benchmark
+    public int testUtf8StringCharAt() {
+        return charAt(utf8String);
+    }
+
+    private static int charAt(CharSequence s) {
+        int sum = 0;
+        for (int i = 0, n = s.length(), step = 4099; i < 1000; i++) {
+            sum += s.charAt((int)((long)i * step % n));
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,100 @@
+package org.rypt.f8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link Utf8ValidatingOutputStream} over a {@link FilterOutputStream}
+ * which forwards chunks in bulk, when writing valid UTF-8 in 8 KB chunks.
+ */
+@SuppressWarnings("ALL")
+@State(Scope.Benchmark)
+public class ValidatingStreamBenchmark {
+
+    @Param({"MOSTLY_ASCII", "LATIN", "ASIAN"})
+    public Utf8Benchmark.Range chars;
+
+    private byte[] bytes;
+
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setup() {
+        int n = chars.bytes.length;
+        switch (Utf8.validity(chars.bytes, 0, n)) { //whole code points only
+            case UNDERFLOW_R3: n--;
+            case UNDERFLOW_R2: n--;
+            case UNDERFLOW_R1: n--;
+        }
+        bytes = Arrays.copyOf(chars.bytes, n);
+    }
+
+    @Benchmark
+    public int testFilter() throws IOException {
+        return write(new FilterOutputStream(sink) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+        });
+    }
+
+    @Benchmark
+    public int testFailFast() throws IOException {
+        return write(new Utf8ValidatingOutputStream(sink));
+    }
+
+    @Benchmark
+    public int testStatistics() throws IOException {
+        return write(new Utf8ValidatingOutputStream(sink, new Utf8Statistics()));
+    }
+
+    private int write(OutputStream out) throws IOException {
+        int n = 0;
+        for (int i = 0; i < bytes.length; i += 8192) {
+            int len = Math.min(8192, bytes.length - i);
+            out.write(bytes, i, len);
+            n += len;
+        }
+        out.close();
+        return n;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        Options opt = new OptionsBuilder()
+                .include(MethodHandles.lookup().lookupClass().getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .jvmArgsAppend(Utf8Benchmark.vectorArgs())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
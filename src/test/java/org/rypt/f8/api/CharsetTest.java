@@ -0,0 +1,149 @@
+package org.rypt.f8.api;
+
+import org.apache.commons.text.RandomStringGenerator;
+import org.junit.Test;
+import org.rypt.f8.Sem;
+import org.rypt.f8.Utf8Charset;
+import org.rypt.f8.Utf8StringBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class CharsetTest {
+
+    @Test
+    public void testForName() {
+        assertSame(Utf8Charset.INSTANCE, Charset.forName("X-F8-UTF-8"));
+        assertSame(Utf8Charset.INSTANCE, Charset.forName("x-f8-utf-8"));
+        assertTrue(Charset.availableCharsets().containsValue(Utf8Charset.INSTANCE));
+        assertTrue(Utf8Charset.INSTANCE.contains(UTF_8));
+    }
+
+    @Test
+    public void testNewString() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            assertEquals(expected(bytes), new String(bytes, Utf8Charset.INSTANCE));
+        });
+    }
+
+    @Test
+    public void testDecoder() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            String expected = expected(bytes);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).clear();
+            CharsetDecoder decoder = Utf8Charset.INSTANCE.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE);
+            for (ByteBuffer in : new ByteBuffer[]{ByteBuffer.wrap(bytes), direct}) {
+                for (CharBuffer out : new CharBuffer[]{CharBuffer.allocate(2), ByteBuffer.allocateDirect(4).asCharBuffer()}) {
+                    for (int cut = 0; cut <= bytes.length; cut += Math.max(1, bytes.length / 2)) {
+                        StringBuilder sb = new StringBuilder();
+                        decoder.reset();
+                        in.clear().limit(cut);
+                        decode(decoder, in, out, false, sb);
+                        in.limit(bytes.length);
+                        decode(decoder, in, out, true, sb);
+                        while (decoder.flush(out).isOverflow()) {
+                            sb.append(out.flip());
+                            out.clear();
+                        }
+                        sb.append(out.flip());
+                        out.clear();
+                        assertEquals(expected, sb.toString());
+                    }
+                }
+            }
+        });
+    }
+
+    private static void decode(CharsetDecoder decoder, ByteBuffer in, CharBuffer out, boolean endOfInput, StringBuilder sb) {
+        for (;;) {
+            CoderResult result = decoder.decode(in, out, endOfInput);
+            sb.append(out.flip());
+            out.clear();
+            if (result.isUnderflow()) {
+                return;
+            }
+            assertTrue(result.isOverflow());
+        }
+    }
+
+    @Test
+    public void testMalformedLengths() {
+        byte[][] inputs = {
+                {(byte)0x80},
+                {(byte)0xc3, 'a'},
+                {(byte)0xe0, (byte)0x80},
+                {(byte)0xe3, (byte)0x81, 'a'},
+                {(byte)0xed, (byte)0xa0, (byte)0x80},
+                {(byte)0xed, (byte)0xa0, 'a'},
+                {(byte)0xf0, (byte)0x8f},
+                {(byte)0xf4, (byte)0x90},
+                {(byte)0xf0, (byte)0x9f, 'a'},
+                {(byte)0xf0, (byte)0x9f, (byte)0x98, 'a'},
+        };
+        int[] lengths = {1, 1, 1, 2, 3, 2, 1, 1, 2, 3};
+        for (int i = 0; i < inputs.length; i++) {
+            CoderResult result = Utf8Charset.INSTANCE.newDecoder()
+                    .decode(ByteBuffer.wrap(inputs[i]), CharBuffer.allocate(8), true);
+            assertTrue(result.isMalformed());
+            assertEquals(lengths[i], result.length());
+        }
+    }
+
+    @Test
+    public void testReader() throws IOException {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] bytes = anyChar.generate(10000).getBytes(UTF_8);
+            bytes[(int)(Math.random() * bytes.length)] = (byte)(Math.random() * 256);
+            StringBuilder sb = new StringBuilder();
+            try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), Utf8Charset.INSTANCE)) {
+                char[] buf = new char[777];
+                for (int n; (n = reader.read(buf)) != -1; ) {
+                    sb.append(buf, 0, n);
+                }
+            }
+            assertEquals(expected(bytes), sb.toString());
+        }
+    }
+
+    @Test
+    public void testEncoder() {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder sb = new StringBuilder(anyChar.generate((int)(Math.random() * 100)));
+            if (sb.length() != 0 && Math.random() < 0.5) {
+                sb.setCharAt((int)(Math.random() * sb.length()), (char)(0xd800 + Math.random() * 0x800));
+            }
+            String s = sb.toString();
+            assertArrayEquals(s.getBytes(UTF_8), s.getBytes(Utf8Charset.INSTANCE));
+        }
+    }
+
+    private static String expected(byte[] bytes) {
+        Utf8StringBuilder sb = new Utf8StringBuilder();
+        sb.write(bytes);
+        sb.close();
+        return sb.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package org.rypt.f8.api;
+
+import org.apache.commons.text.RandomStringGenerator;
+import org.junit.Test;
+import org.rypt.f8.Sem;
+import org.rypt.f8.Utf8String;
+import org.rypt.f8.Utf8StringBuilder;
+
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class Utf8StringTest {
+
+    private static final Random random = new Random();
+
+    @Test
+    public void testCharSequence() {
+        RandomStringGenerator[] generators = {
+                new RandomStringGenerator.Builder().withinRange(0, 0x7f).build(),
+                new RandomStringGenerator.Builder().withinRange(0, 0xffff).filteredBy(c -> !Character.isSurrogate((char)c)).build(),
+                new RandomStringGenerator.Builder().withinRange(0, Character.MAX_CODE_POINT).build(),
+                new RandomStringGenerator.Builder().withinRange(0xfff0, 0x1000f).build(),
+        };
+        for (RandomStringGenerator generator : generators) {
+            for (int i = 0; i < 1000; i++) {
+                String s = generator.generate(random.nextInt(300));
+                Utf8String u = Utf8String.valueOf(s);
+                assertEquals(s.length(), u.length());
+                assertEquals(s.getBytes(UTF_8).length, u.utf8Length());
+                assertArrayEquals(s.getBytes(UTF_8), u.toByteArray());
+                assertEquals(s, u.toString());
+                assertEquals(s.hashCode(), u.hashCode());
+                assertArrayEquals(s.codePoints().toArray(), u.codePoints().toArray());
+                for (int j = 0; j < s.length(); j++) {
+                    assertEquals(s.charAt(j), u.charAt(j));
+                }
+                for (int j = 0; j < 10; j++) {
+                    int start = random.nextInt(s.length() + 1);
+                    int end = start + random.nextInt(s.length() - start + 1);
+                    CharSequence sub = u.subSequence(start, end);
+                    assertEquals(s.substring(start, end), sub.toString());
+                    assertEquals(end - start, sub.length());
+                }
+                assertEquals(u, Utf8String.valueOf(s.getBytes(UTF_8), 0, u.utf8Length()));
+            }
+        }
+    }
+
+    @Test
+    public void testBounds() {
+        Utf8String u = Utf8String.valueOf("aé😀");
+        for (int i : new int[]{-1, 5}) {
+            try {
+                u.charAt(i);
+                fail();
+            } catch (StringIndexOutOfBoundsException expected) {
+            }
+        }
+        try {
+            u.subSequence(2, 1);
+            fail();
+        } catch (StringIndexOutOfBoundsException expected) {
+        }
+        assertEquals("\ud83d", u.subSequence(2, 3));
+        assertEquals(Utf8String.valueOf("é😀"), u.subSequence(1, 4));
+    }
+
+    @Test
+    public void testCompareTo() {
+        String alphabet = "aé中￿𐀀􏿿";
+        int[] codePoints = alphabet.codePoints().toArray();
+        for (int i = 0; i < 10000; i++) {
+            String s1 = generate(codePoints);
+            String s2 = random.nextBoolean() ? generate(codePoints) : s1 + generate(codePoints);
+            Utf8String u1 = Utf8String.valueOf(s1);
+            Utf8String u2 = Utf8String.valueOf(s2);
+            assertEquals(s1.compareTo(s2), u1.compareTo(u2));
+            assertEquals(s2.compareTo(s1), u2.compareTo(u1));
+            assertEquals(s1.equals(s2), u1.equals(u2));
+        }
+    }
+
+    private static String generate(int[] codePoints) {
+        StringBuilder sb = new StringBuilder();
+        for (int n = random.nextInt(5); n > 0; n--) {
+            sb.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testMalformed() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            Utf8String u = Utf8String.valueOf(bytes, 0, bytes.length);
+            assertEquals(expected.toString(), u.toString());
+            assertEquals(expected.length(), u.length());
+        });
+    }
+}
@@ -1,28 +1,58 @@
 package org.rypt.f8.api;
 
+import org.apache.commons.text.RandomStringGenerator;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.rypt.f8.Sem;
+import org.rypt.f8.SurrogatePolicy;
 import org.rypt.f8.Utf8;
+import org.rypt.f8.Utf8ByteHandler;
+import org.rypt.f8.Utf8Detector;
+import org.rypt.f8.Utf8Engine;
 import org.rypt.f8.Utf8Handler;
+import org.rypt.f8.Utf8Reader;
+import org.rypt.f8.Utf8SampledStatistics;
 import org.rypt.f8.Utf8Statistics;
 import org.rypt.f8.Utf8StringBuilder;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class Utf8Test {
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Test
     public void testNoInstantiation() throws Exception {
         Constructor<?> c = Utf8.class.getDeclaredConstructor();
@@ -60,6 +90,979 @@ public class Utf8Test {
         });
     }
 
+    @Test
+    public void testDetector() throws IOException {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            Utf8Statistics stats = new Utf8Statistics();
+            stats.write(bytes);
+            Utf8Detector detector = new Utf8Detector(Integer.MAX_VALUE, Long.MAX_VALUE);
+            for (int i = 0; i < bytes.length; i += 3) {
+                assertFalse(detector.update(bytes, i, Math.min(3, bytes.length - i)));
+            }
+            assertEquals(bytes.length, detector.bytesExamined());
+            assertEquals(stats.looksLikeUtf8(), detector.looksLikeUtf8());
+        });
+
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+        RandomStringGenerator latin1 = new RandomStringGenerator.Builder()
+                .withinRange(0xa0, 0xff)
+                .build();
+        for (int i = 0; i < 10; i++) {
+            byte[] utf8 = anyChar.generate(100000).getBytes(UTF_8);
+            Utf8Detector detector = new Utf8Detector();
+            assertTrue(detector.detect(new ByteArrayInputStream(utf8)));
+            assertTrue(detector.isDone());
+            assertTrue(detector.bytesExamined() <= 1024);
+
+            byte[] iso = latin1.generate(100000).getBytes(ISO_8859_1);
+            detector = new Utf8Detector();
+            assertFalse(detector.detect(new ByteArrayInputStream(iso)));
+            assertTrue(detector.isDone());
+            assertTrue(detector.bytesExamined() <= 1024);
+        }
+
+        byte[] ascii = new byte[100000];
+        Arrays.fill(ascii, (byte)'a');
+        Utf8Detector detector = new Utf8Detector(Utf8Detector.DEFAULT_THRESHOLD, 5000);
+        assertFalse(detector.detect(new ByteArrayInputStream(ascii)));
+        assertTrue(detector.isDone());
+        assertEquals(5000, detector.bytesExamined());
+        detector = new Utf8Detector();
+        assertFalse(detector.detect(new ByteArrayInputStream(ascii)));
+        assertFalse(detector.isDone());
+        assertEquals(ascii.length, detector.bytesExamined());
+
+        for (long[] args : new long[][]{{0, 1}, {1, 0}}) {
+            try {
+                new Utf8Detector((int)args[0], args[1]);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testByteBuffer() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).clear();
+            for (ByteBuffer buf : new ByteBuffer[]{ByteBuffer.wrap(bytes), direct}) {
+                for (int cut = 0; cut <= bytes.length; cut++) {
+                    Utf8StringBuilder sb = new Utf8StringBuilder();
+                    buf.limit(cut);
+                    int state = Utf8.nextState(0, buf, sb);
+                    assertEquals(cut, buf.position());
+                    buf.limit(bytes.length);
+                    state = Utf8.nextState(state, buf, sb);
+                    assertEquals(bytes.length, buf.position());
+                    Utf8.finish(state, sb);
+                    assertEquals(new String(bytes, UTF_8), sb.toString());
+                    buf.clear();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testAsciiRuns() {
+        byte[] ascii = new byte[1000];
+        Arrays.fill(ascii, (byte)'a');
+        byte[] json = "{\"name\":\"value\",\"list\":[1,2,3],\"text\":\"café\",\"end\":true}".getBytes(UTF_8);
+        for (Utf8Engine engine : new Utf8Engine[]{Utf8.specialize(Utf8StringBuilder.class), Utf8.dfa()}) {
+            for (byte[] bytes : new byte[][]{ascii, json}) {
+                int expectedRuns = bytes == ascii ? 1 : 2;
+                long[] counts = new long[2];
+                Utf8StringBuilder sb = new Utf8StringBuilder() {
+                    @Override
+                    public void handle1ByteCodePoint(int b) {
+                        super.handle1ByteCodePoint(b);
+                        counts[0]++;
+                    }
+
+                    @Override
+                    public void handleAsciiRun(byte[] b, int from, int to) {
+                        super.handleAsciiRun(b, from, to);
+                        counts[1]++;
+                    }
+                };
+                assertEquals(0, Utf8.nextState(0, bytes, 0, bytes.length, sb));
+                assertEquals(0, engine.nextState(0, ByteBuffer.wrap(bytes), sb));
+                assertEquals(0, counts[0]);
+                assertEquals(2 * expectedRuns, counts[1]);
+                assertEquals(new String(bytes, UTF_8) + new String(bytes, UTF_8), sb.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testAsciiSubclass() {
+        byte[] bytes = "abcédefghijklmnopqrstuvwxyz中0123456789".getBytes(UTF_8);
+        long ascii = new String(bytes, UTF_8).chars().filter(c -> c < 0x80).count();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).clear();
+        for (ByteBuffer buf : new ByteBuffer[]{null, ByteBuffer.wrap(bytes), direct}) {
+            long[] count = new long[2];
+            Utf8Statistics stats = new Utf8Statistics() {
+                @Override
+                public void handle1ByteCodePoint(int b) {
+                    super.handle1ByteCodePoint(b);
+                    count[0]++;
+                }
+            };
+            Utf8StringBuilder sb = new Utf8StringBuilder() {
+                @Override
+                public void handle1ByteCodePoint(int b) {
+                    super.handle1ByteCodePoint(b);
+                    count[1]++;
+                }
+            };
+            for (Utf8Statistics handler : new Utf8Statistics[]{stats, sb}) {
+                if (buf == null) {
+                    Utf8.finish(Utf8.nextState(0, bytes, 0, bytes.length, handler), handler);
+                } else {
+                    buf.clear();
+                    Utf8.finish(Utf8.nextState(0, buf, handler), handler);
+                }
+                assertEquals(ascii, handler.countAscii());
+            }
+            assertEquals(ascii, count[0]);
+            assertEquals(ascii, count[1]);
+            assertEquals(new String(bytes, UTF_8), sb.toString());
+        }
+    }
+
+    @Test
+    public void testSpecialize() {
+        Utf8Engine engine = Utf8.specialize(Utf8StringBuilder.class);
+        assertSame(engine, Utf8.specialize(Utf8StringBuilder.class));
+        assertEquals(Utf8.isSpecializing(), engine.getClass() != Utf8.specialize(Utf8Statistics.class).getClass());
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            String expected = new String(bytes, UTF_8);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).clear();
+            for (int cut = 0; cut <= bytes.length; cut++) {
+                Utf8StringBuilder sb = new Utf8StringBuilder();
+                int state = engine.nextState(0, bytes, 0, cut, sb);
+                Utf8.finish(engine.nextState(state, bytes, cut, bytes.length, sb), sb);
+                assertEquals(expected, sb.toString());
+
+                sb = new Utf8StringBuilder();
+                direct.limit(cut);
+                state = engine.nextState(0, direct, sb);
+                assertEquals(cut, direct.position());
+                direct.limit(bytes.length);
+                Utf8.finish(engine.nextState(state, direct, sb), sb);
+                assertEquals(expected, sb.toString());
+                direct.clear();
+            }
+            Utf8StringBuilder sb = new Utf8StringBuilder();
+            try {
+                engine.transfer(new ByteArrayInputStream(bytes), sb);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            assertEquals(expected, sb.toString());
+        });
+    }
+
+    @Test
+    public void testDfa() {
+        Utf8Engine dfa = Utf8.dfa();
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).clear();
+            for (int cut = 0; cut <= bytes.length; cut++) {
+                EventLog expected = new EventLog();
+                EventLog actual = new EventLog();
+                int state = Utf8.nextState(0, bytes, 0, cut, expected);
+                assertEquals(state, dfa.nextState(0, bytes, 0, cut, actual));
+                int next = Utf8.nextState(state, bytes, cut, bytes.length, expected);
+                assertEquals(next, dfa.nextState(state, bytes, cut, bytes.length, actual));
+                assertEquals(expected.toString(), actual.toString());
+
+                expected = new EventLog();
+                actual = new EventLog();
+                direct.limit(cut);
+                state = Utf8.nextState(0, direct, expected);
+                direct.position(0);
+                assertEquals(state, dfa.nextState(0, direct, actual));
+                direct.limit(bytes.length);
+                next = Utf8.nextState(state, direct, expected);
+                direct.position(cut);
+                assertEquals(next, dfa.nextState(state, direct, actual));
+                assertEquals(expected.toString(), actual.toString());
+                direct.clear();
+            }
+        });
+
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            byte[] bytes = anyChar.generate(1000).getBytes(UTF_8);
+            for (int j = 0; j < i; j++) {
+                bytes[(int)(Math.random() * bytes.length)] = (byte)(Math.random() * 256);
+            }
+            EventLog expected = new EventLog();
+            EventLog actual = new EventLog();
+            assertEquals(Utf8.nextState(0, bytes, 0, bytes.length, expected),
+                    dfa.nextState(0, bytes, 0, bytes.length, actual));
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    private static class EventLog implements Utf8ByteHandler<RuntimeException> {
+        private final StringBuilder log = new StringBuilder();
+
+        @Override
+        public void handle1ByteCodePoint(int b1) {
+            log.append(" 1:").append(b1);
+        }
+
+        @Override
+        public void handleAsciiRun(byte[] b, int from, int to) {
+            log.append(" run:").append(from).append('-').append(to);
+        }
+
+        @Override
+        public void handle2ByteCodePoint(int b1, int b2) {
+            log.append(" 2:").append(b1).append(',').append(b2);
+        }
+
+        @Override
+        public void handle3ByteCodePoint(int b1, int b2, int b3) {
+            log.append(" 3:").append(b1).append(',').append(b2).append(',').append(b3);
+        }
+
+        @Override
+        public void handle4ByteCodePoint(int b1, int b2, int b3, int b4) {
+            log.append(" 4:").append(b1).append(',').append(b2).append(',').append(b3).append(',').append(b4);
+        }
+
+        @Override
+        public void handlePrefixError(int err) {
+            log.append(" prefix:").append(err);
+        }
+
+        @Override
+        public void handleContinuationError(int b1, int err) {
+            log.append(" cont:").append(b1).append(',').append(err);
+        }
+
+        @Override
+        public void handleContinuationError(int b1, int b2, int err) {
+            log.append(" cont:").append(b1).append(',').append(b2).append(',').append(err);
+        }
+
+        @Override
+        public void handleContinuationError(int b1, int b2, int b3, int err) {
+            log.append(" cont:").append(b1).append(',').append(b2).append(',').append(b3).append(',').append(err);
+        }
+
+        @Override
+        public void handleIgnoredByte(int b) {
+            log.append(" ignored:").append(b);
+        }
+
+        @Override
+        public String toString() {
+            return log.toString();
+        }
+    }
+
+    @Test
+    public void testPath() throws IOException {
+        Path file = tmp.newFile().toPath();
+        Sem.combinations(3).forEach(sems -> {
+            byte[] bytes = sems.generate();
+            try {
+                Files.write(file, bytes);
+                Utf8StringBuilder sb = new Utf8StringBuilder();
+                Utf8.transfer(file, sb);
+                assertEquals(new String(bytes, UTF_8), sb.toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testStreamBufferSize() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            for (int bufferSize = 4; bufferSize <= 5; bufferSize++) {
+                Utf8StringBuilder sb = new Utf8StringBuilder();
+                try {
+                    Utf8.transfer(new ByteArrayInputStream(bytes), sb, bufferSize);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                assertEquals(expected.toString(), sb.toString());
+            }
+        });
+    }
+
+    @Test
+    public void testCountChars() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            byte[] padded = new byte[8 + bytes.length + 8];
+            Arrays.fill(padded, (byte)'a');
+            System.arraycopy(bytes, 0, padded, 8, bytes.length);
+            for (int from : new int[]{0, 5, 8}) {
+                for (int to : new int[]{8 + bytes.length, padded.length}) {
+                    Utf8StringBuilder expected = new Utf8StringBuilder();
+                    expected.write(padded, from, to - from);
+                    expected.close();
+                    assertEquals(expected.countCodePoints(), Utf8.countCodePoints(padded, from, to));
+                    assertEquals(expected.length(), Utf8.utf16Length(padded, from, to));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testBigCountChars() {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            String s = anyChar.generate(10000);
+            byte[] bytes = s.getBytes(UTF_8);
+            assertEquals(s.codePointCount(0, s.length()), Utf8.countCodePoints(bytes, 0, bytes.length));
+            assertEquals(s.length(), Utf8.utf16Length(bytes, 0, bytes.length));
+            bytes[(int)(Math.random() * bytes.length)] = (byte)(Math.random() * 256);
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            assertEquals(expected.countCodePoints(), Utf8.countCodePoints(bytes, 0, bytes.length));
+            assertEquals(expected.length(), Utf8.utf16Length(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    public void testDecodeToString() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            byte[] padded = new byte[8 + bytes.length + 8];
+            Arrays.fill(padded, (byte)'a');
+            System.arraycopy(bytes, 0, padded, 8, bytes.length);
+            for (int from : new int[]{0, 8}) {
+                for (int to : new int[]{8 + bytes.length, padded.length}) {
+                    Utf8StringBuilder expected = new Utf8StringBuilder();
+                    expected.write(padded, from, to - from);
+                    expected.close();
+                    assertEquals(expected.toString(), Utf8.decodeToString(padded, from, to));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testBigDecodeToString() {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            String s = anyChar.generate(10000);
+            byte[] bytes = s.getBytes(UTF_8);
+            assertEquals(s, Utf8.decodeToString(bytes, 0, bytes.length));
+            bytes[(int)(Math.random() * bytes.length)] = (byte)(Math.random() * 256);
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            assertEquals(expected.toString(), Utf8.decodeToString(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    public void testCodePoints() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            byte[] padded = new byte[8 + bytes.length + 8];
+            Arrays.fill(padded, (byte)'a');
+            System.arraycopy(bytes, 0, padded, 8, bytes.length);
+            for (int from : new int[]{0, 8}) {
+                for (int to : new int[]{8 + bytes.length, padded.length}) {
+                    Utf8StringBuilder expected = new Utf8StringBuilder();
+                    expected.write(padded, from, to - from);
+                    expected.close();
+                    int[] codePoints = expected.toString().codePoints().toArray();
+                    assertArrayEquals(codePoints, Utf8.codePoints(padded, from, to).toArray());
+                    assertArrayEquals(codePoints, split(Utf8.codePoints(padded, from, to).spliterator()).build().toArray());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testBigCodePoints() {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            String s = anyChar.generate(10000);
+            byte[] bytes = s.getBytes(UTF_8);
+            assertArrayEquals(s.codePoints().toArray(), Utf8.codePoints(bytes, 0, bytes.length).parallel().toArray());
+            bytes[(int)(Math.random() * bytes.length)] = (byte)(Math.random() * 256);
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            assertArrayEquals(expected.toString().codePoints().toArray(), Utf8.codePoints(bytes, 0, bytes.length).parallel().toArray());
+        }
+
+        byte[] ascii = new byte[100000];
+        Arrays.fill(ascii, (byte)'a');
+        assertEquals(ascii.length, Utf8.codePoints(ascii, 0, ascii.length).spliterator().getExactSizeIfKnown());
+        assertEquals(ascii.length, Utf8.codePoints(ascii, 0, ascii.length).parallel().count());
+        ascii[ascii.length - 1] = (byte)0xc3;
+        assertEquals(-1, Utf8.codePoints(ascii, 0, ascii.length).spliterator().getExactSizeIfKnown());
+    }
+
+    /**
+     * Splits the spliterator as far as possible and concatenates the code points of each part
+     */
+    private static IntStream.Builder split(Spliterator.OfInt spliterator) {
+        IntStream.Builder builder = IntStream.builder();
+        Spliterator.OfInt prefix = spliterator.trySplit();
+        if (prefix == null) {
+            spliterator.forEachRemaining((IntConsumer)builder);
+        } else {
+            split(prefix).build().forEach(builder);
+            split(spliterator).build().forEach(builder);
+        }
+        return builder;
+    }
+
+    @Test
+    public void testSanitize() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            byte[] padded = new byte[8 + bytes.length + 8];
+            Arrays.fill(padded, (byte)'a');
+            System.arraycopy(bytes, 0, padded, 8, bytes.length);
+            for (int from : new int[]{0, 8}) {
+                for (int to : new int[]{8 + bytes.length, padded.length}) {
+                    Utf8StringBuilder sb = new Utf8StringBuilder();
+                    sb.write(padded, from, to - from);
+                    sb.close();
+                    byte[] expected = sb.toString().getBytes(UTF_8);
+                    byte[] actual = Utf8.sanitize(padded, from, to);
+                    assertArrayEquals(expected, actual);
+                    if (from == 0 && to == padded.length && sb.countInvalid() == 0) {
+                        assertSame(padded, actual);
+                    }
+
+                    for (ByteBuffer buf : new ByteBuffer[]{ByteBuffer.allocate(expected.length + 2), ByteBuffer.allocateDirect(expected.length + 2)}) {
+                        buf.position(1);
+                        Utf8.sanitize(padded, from, to, buf);
+                        assertEquals(expected.length + 1, buf.position());
+                        buf.flip().position(1);
+                        byte[] put = new byte[expected.length];
+                        buf.get(put);
+                        assertArrayEquals(expected, put);
+
+                        if (expected.length != 0) {
+                            buf.clear().position(3);
+                            try {
+                                Utf8.sanitize(padded, from, to, buf);
+                                fail();
+                            } catch (BufferOverflowException e) {
+                                assertEquals(3, buf.position());
+                            }
+                        }
+                    }
+
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    try {
+                        Utf8.sanitize(padded, from, to, out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    assertArrayEquals(expected, out.toByteArray());
+                }
+            }
+        });
+
+        //a stream which overwrites the arrays passed to it must not affect later calls
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                super.write(b, off, len);
+                Arrays.fill(b, off, off + len, (byte)0);
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            out.reset();
+            try {
+                Utf8.sanitize(new byte[]{'a', (byte)0xff, 'b'}, 0, 3, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            assertArrayEquals("a�b".getBytes(UTF_8), out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testCompactStringBuilder() {
+        Utf8StringBuilder compact = new Utf8StringBuilder(true);
+        Sem.combinations(5).forEach(sems -> {
+            byte[] bytes = sems.generate();
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            compact.reset();
+            for (byte b : bytes) {
+                compact.write(b);
+            }
+            compact.close();
+            assertCompact(expected, compact);
+            compact.reset();
+            compact.write(bytes);
+            compact.close();
+            assertCompact(expected, compact);
+        });
+    }
+
+    @Test
+    public void testBigCompactStringBuilder() {
+        RandomStringGenerator latin1 = new RandomStringGenerator.Builder()
+                .withinRange(0, 0xff)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            StringBuilder sb = new StringBuilder(latin1.generate(10000));
+            if (i % 2 == 0) {
+                sb.setCharAt((int)(Math.random() * sb.length()), (char)(0x100 + Math.random() * 0xd700));
+            }
+            byte[] bytes = sb.toString().getBytes(UTF_8);
+            Utf8StringBuilder compact = new Utf8StringBuilder(true);
+            compact.write(bytes, 0, 777);
+            compact.write(bytes, 777, bytes.length - 777);
+            compact.close();
+            assertEquals(sb.toString(), compact.toString());
+            assertEquals(sb.length(), compact.length());
+        }
+    }
+
+    private static void assertCompact(Utf8StringBuilder expected, Utf8StringBuilder actual) {
+        String s = expected.toString();
+        assertEquals(s, actual.toString());
+        assertEquals(s.length(), actual.length());
+        for (int i = 0; i < s.length(); i++) {
+            assertEquals(s.charAt(i), actual.charAt(i));
+        }
+        assertEquals(s.substring(s.length() / 2), actual.subSequence(s.length() / 2, s.length()).toString());
+        try {
+            actual.charAt(s.length());
+            fail();
+        } catch (IndexOutOfBoundsException expectedException) {
+        }
+    }
+
+    @Test
+    public void testMergeStatistics() {
+        Sem.combinations(5).parallel().forEach(sems -> {
+            byte[] bytes = sems.generate();
+            int n = bytes.length;
+            Utf8Statistics expected = new Utf8Statistics();
+            expected.write(bytes);
+            for (int i = 0; i <= n; i++) {
+                for (int j = i; j <= n; j++) {
+                    Utf8Statistics left = statistics(bytes, 0, i).merge(statistics(bytes, i, j)).merge(statistics(bytes, j, n));
+                    Utf8Statistics right = statistics(bytes, 0, i).merge(statistics(bytes, i, j).merge(statistics(bytes, j, n)));
+                    assertEquals(expected.toString(), left.toString());
+                    assertEquals(expected.toString(), right.toString());
+                }
+            }
+            expected.close();
+            assertEquals(expected.toString(), Utf8Statistics.parallelOf(bytes, 0, n, 1).toString());
+        });
+
+        //the bytes replayed at the boundary are not passed to a subclass's handler methods
+        byte[] bytes = "é".getBytes(UTF_8);
+        int[] events = new int[1];
+        Utf8Statistics left = new Utf8Statistics() {
+            @Override
+            public void handleCodePoint(int codePoint) {
+                super.handleCodePoint(codePoint);
+                events[0]++;
+            }
+
+            @Override
+            public void handle1ByteCodePoint(int ascii) {
+                super.handle1ByteCodePoint(ascii);
+                events[0]++;
+            }
+
+            @Override
+            public void handle2ByteCodePoint(int b1, int b2) {
+                super.handle2ByteCodePoint(b1, b2);
+                events[0]++;
+            }
+        };
+        left.write(bytes, 0, 1);
+        Utf8Statistics right = new Utf8Statistics();
+        right.write(bytes, 1, 1);
+        right.write('a');
+        left.merge(right).close();
+        assertEquals(0, events[0]);
+        assertEquals(2, left.countCodePoints());
+        assertEquals(0, left.countInvalid());
+
+        Utf8StringBuilder sb = new Utf8StringBuilder();
+        sb.write(bytes, 0, 1);
+        Utf8StringBuilder other = new Utf8StringBuilder();
+        other.write(bytes, 1, 1);
+        try {
+            sb.merge(other);
+            fail();
+        } catch (UnsupportedOperationException expectedException) {
+        }
+        assertEquals(1, new Utf8Statistics().merge(sb).merge(other).countCodePoints());
+    }
+
+    @Test
+    public void testParallelStatisticsPath() throws IOException {
+        Path file = tmp.newFile().toPath();
+        Sem.combinations(3).forEach(sems -> {
+            byte[] bytes = sems.generate();
+            try {
+                Files.write(file, bytes);
+                Utf8Statistics expected = new Utf8Statistics();
+                Utf8.transfer(file, expected);
+                for (int chunkSize = 1; chunkSize <= 3; chunkSize++) {
+                    assertEquals(expected.toString(), Utf8Statistics.parallelOf(file, chunkSize).toString());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testSampledStatistics() throws IOException {
+        Path file = tmp.newFile().toPath();
+        Random random = new Random(0);
+        Sem.combinations(3).forEach(sems -> {
+            byte[] bytes = sems.generate();
+            try {
+                Files.write(file, bytes);
+                Utf8SampledStatistics sampled = Utf8SampledStatistics.of(file, 1, 4, random);
+                assertTrue(sampled.isExact());
+                Utf8Statistics exact = Utf8Statistics.parallelOf(file, 1);
+                assertEquals(exact.countAscii(), sampled.countAscii());
+                assertEquals(exact.count2Byte(), sampled.count2Byte());
+                assertEquals(exact.count3Byte(), sampled.count3Byte());
+                assertEquals(exact.count4Byte(), sampled.count4Byte());
+                assertEquals(exact.countInvalid(), sampled.countInvalid());
+                assertEquals(exact.countInvalidIgnoringTruncation(), sampled.countInvalidIgnoringTruncation());
+                assertEquals(0, sampled.marginOfError(Utf8Statistics::countInvalid, 4), 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        RandomStringGenerator[] ranges = {
+                new RandomStringGenerator.Builder().usingRandom(random::nextInt).withinRange(0x20, 0x7e).build(),
+                new RandomStringGenerator.Builder().usingRandom(random::nextInt).withinRange(0xa0, 0x7ff).build(),
+                new RandomStringGenerator.Builder().usingRandom(random::nextInt).withinRange(0x4e00, 0x9fff).build(),
+                new RandomStringGenerator.Builder().usingRandom(random::nextInt).withinRange(0, Character.MAX_CODE_POINT).build()
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (out.size() < 4 << 20) {
+            byte[] block = ranges[random.nextInt(ranges.length)].generate(random.nextInt(1000)).getBytes(UTF_8);
+            for (int i = random.nextInt(1000); i < block.length; i += 1000) {
+                block[i] = (byte)0xff;
+            }
+            out.write(block, 0, block.length);
+        }
+        Files.write(file, out.toByteArray());
+        Utf8Statistics exact = Utf8Statistics.parallelOf(file, 1);
+        Utf8SampledStatistics sampled = Utf8SampledStatistics.of(file, 64, 4096, random);
+        assertFalse(sampled.isExact());
+        assertEquals(out.size(), sampled.size());
+        assertTrue(sampled.sampledBytes() > 64 * 4096 - 64 * 4 && sampled.sampledBytes() < 64 * 4096 + 64 * 4);
+        List<ToLongFunction<Utf8Statistics>> counts = Arrays.asList(Utf8Statistics::countAscii,
+                Utf8Statistics::count2Byte, Utf8Statistics::count3Byte, Utf8Statistics::count4Byte,
+                Utf8Statistics::countInvalid, Utf8Statistics::countCodePoints);
+        for (ToLongFunction<Utf8Statistics> count : counts) {
+            double margin = sampled.marginOfError(count, 4);
+            assertTrue(margin > 0);
+            assertEquals(count.applyAsLong(exact), sampled.estimate(count), margin);
+        }
+        assertEquals(exact.looksLikeUtf8(), sampled.looksLikeUtf8());
+
+        try {
+            Utf8SampledStatistics.of(file, 0, 4096, random);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            Utf8SampledStatistics.of(file, 64, 3, random);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static Utf8Statistics statistics(byte[] bytes, int from, int to) {
+        Utf8Statistics stats = new Utf8Statistics();
+        for (int i = from; i < to; i++) {
+            stats.write(bytes[i]);
+        }
+        return stats;
+    }
+
+    @Test
+    public void testDecode() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            for (int cut = 0; cut <= bytes.length; cut++) {
+                for (int dstLen = 2; dstLen <= 4; dstLen++) {
+                    assertEquals(expected.toString(), decode(bytes, cut, dstLen));
+                }
+            }
+            assertEquals(expected.toString(), decode(bytes, 0, bytes.length * 2 + 1));
+        });
+    }
+
+    private static String decode(byte[] bytes, int cut, int dstLen) {
+        StringBuilder sb = new StringBuilder();
+        char[] dst = new char[1 + dstLen + 1];
+        int state = 0;
+        for (int[] range : new int[][]{{0, cut}, {cut, bytes.length}}) {
+            int from = range[0];
+            int to = range[1];
+            for (;;) {
+                long result = Utf8.decode(state, bytes, from, to, dst, 1, dstLen);
+                sb.append(dst, 1, Utf8.decodedChars(result));
+                state = Utf8.decodedState(result);
+                if (Utf8.remainingBytes(result) == 0) {
+                    break;
+                }
+                assertEquals(0, state);
+                assertTrue(Utf8.decodedChars(result) > 0);
+                from = to - Utf8.remainingBytes(result);
+            }
+        }
+        if (Utf8.isIncompleteState(state)) {
+            sb.append('�');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testDecodeCharBuffer() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).clear();
+            for (ByteBuffer src : new ByteBuffer[]{ByteBuffer.wrap(bytes), direct}) {
+                for (CharBuffer dst : new CharBuffer[]{CharBuffer.allocate(2), CharBuffer.allocate(5),
+                        ByteBuffer.allocateDirect(6).asCharBuffer()}) {
+                    StringBuilder sb = new StringBuilder();
+                    int cut = bytes.length / 2;
+                    int state = 0;
+                    for (int limit : new int[]{cut, bytes.length}) {
+                        src.limit(limit);
+                        do {
+                            state = Utf8.decode(state, src, dst);
+                            sb.append(dst.flip());
+                            dst.clear();
+                        } while (src.hasRemaining());
+                    }
+                    if (Utf8.isIncompleteState(state)) {
+                        sb.append('�');
+                    }
+                    assertEquals(expected.toString(), sb.toString());
+                    src.clear();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testEncodeCodePoints() {
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            if (Character.isSurrogate((char)cp) && cp <= Character.MAX_VALUE) {
+                continue;
+            }
+            String s = new String(Character.toChars(cp));
+            byte[] b = new byte[4];
+            int n = Utf8.encode(s, 0, s.length(), b, 0);
+            assertEquals(n, Utf8.encodedLength(s));
+            switch (n) {
+                case 1: assertEquals(cp, b[0]); break;
+                case 2: assertEquals(cp, Utf8.codePoint(b[0], b[1])); break;
+                case 3: assertEquals(cp, Utf8.codePoint(b[0], b[1], b[2])); break;
+                case 4: assertEquals(cp, Utf8.codePoint(b[0], b[1], b[2], b[3])); break;
+                default: fail();
+            }
+        }
+    }
+
+    @Test
+    public void testEncode() {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder sb = new StringBuilder(anyChar.generate((int)(Math.random() * 100)));
+            int lone;
+            if (sb.length() != 0 && Math.random() < 0.5) {
+                sb.setCharAt((int)(Math.random() * sb.length()), (char)(0xd800 + Math.random() * 0x800));
+            }
+            String s = sb.toString();
+            byte[] expected = s.getBytes(UTF_8);
+            assertEquals(expected.length, Utf8.encodedLength(s));
+
+            byte[] b = new byte[expected.length + 2];
+            assertEquals(expected.length + 1, Utf8.encode(s, 0, s.length(), b, 1));
+            assertArrayEquals(expected, Arrays.copyOfRange(b, 1, expected.length + 1));
+
+            for (ByteBuffer bb : new ByteBuffer[]{ByteBuffer.allocate(expected.length + 1),
+                    ByteBuffer.allocateDirect(expected.length + 1)}) {
+                bb.put((byte)'x');
+                Utf8.encode(s, 0, s.length(), bb);
+                assertEquals(expected.length + 1, bb.position());
+                byte[] actual = new byte[expected.length];
+                bb.position(1);
+                bb.get(actual);
+                assertArrayEquals(expected, actual);
+
+                if (expected.length != 0) {
+                    bb.position(2);
+                    try {
+                        Utf8.encode(s, 0, s.length(), bb);
+                        fail();
+                    } catch (BufferOverflowException e) {
+                        assertEquals(2, bb.position());
+                    }
+                }
+            }
+
+            if (expected.length != 0) {
+                try {
+                    Utf8.encode(s, 0, s.length(), new byte[expected.length - 1], 0);
+                    fail();
+                } catch (ArrayIndexOutOfBoundsException expectedException) {
+                }
+            }
+
+            lone = firstLoneSurrogate(s);
+            if (lone == -1) {
+                assertEquals(expected.length, Utf8.encodedLength(s, 0, s.length(), SurrogatePolicy.THROW));
+                assertEquals(expected.length, Utf8.encode(s, 0, s.length(), b, 0, SurrogatePolicy.THROW));
+            } else {
+                String message = "Unpaired surrogate at index " + lone;
+                try {
+                    Utf8.encodedLength(s, 0, s.length(), SurrogatePolicy.THROW);
+                    fail();
+                } catch (IllegalArgumentException e) {
+                    assertEquals(message, e.getMessage());
+                }
+                try {
+                    Utf8.encode(s, 0, s.length(), ByteBuffer.allocateDirect(b.length), SurrogatePolicy.THROW);
+                    fail();
+                } catch (IllegalArgumentException e) {
+                    assertEquals(message, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static int firstLoneSurrogate(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testReader() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            int[][] chunksAndLengths = {{1, 1}, {2, 3}, {3, 2}, {1, 16}, {bytes.length + 1, 1}, {bytes.length + 1, 16}};
+            for (int[] c : chunksAndLengths) {
+                assertEquals(expected.toString(), read(new Utf8Reader(new ChunkedInputStream(bytes, c[0])), c[1]));
+            }
+            assertEquals(expected.toString(), read(new Utf8Reader(
+                    Channels.newChannel(new ByteArrayInputStream(bytes))), 1));
+        });
+    }
+
+    @Test
+    public void testBigReader() {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] bytes = anyChar.generate(10000).getBytes(UTF_8);
+            bytes[(int)(Math.random() * bytes.length)] = (byte)(Math.random() * 256);
+            Utf8StringBuilder expected = new Utf8StringBuilder();
+            expected.write(bytes);
+            expected.close();
+            assertEquals(expected.toString(), read(new Utf8Reader(new ByteArrayInputStream(bytes)), 777));
+            assertEquals(expected.toString(), read(new Utf8Reader(new ChunkedInputStream(bytes, 1000)), 1));
+        }
+    }
+
+    private static String read(Reader reader, int len) {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[len + 2];
+        try (Reader r = reader) {
+            for (int n; (n = r.read(buf, 1, len)) != -1; ) {
+                assertTrue(n > 0);
+                sb.append(buf, 1, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    private static class ChunkedInputStream extends ByteArrayInputStream {
+        private final int chunk;
+
+        ChunkedInputStream(byte[] bytes, int chunk) {
+            super(bytes);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, chunk));
+        }
+    }
+
     @Test
     public void testAppendable() {
         Sem.testAllCombinations(sems -> {
@@ -267,6 +1270,16 @@ public class Utf8Test {
             assertByte(ascii);
         }
 
+        @Override
+        public void handleAsciiRun(byte[] b, int from, int to) {
+            super.handleAsciiRun(b, from, to);
+            assertTrue(from < to);
+            for (int i = from; i < to; i++) {
+                assertTrue(b[i] >= 0);
+                assertByte(b[i]);
+            }
+        }
+
         @Override
         public void handle2ByteCodePoint(int b1, int b2) {
             super.handle2ByteCodePoint(b1, b2);
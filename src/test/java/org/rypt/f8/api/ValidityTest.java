@@ -1,14 +1,35 @@
 package org.rypt.f8.api;
 
 import org.apache.commons.text.RandomStringGenerator;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.rypt.f8.Jdk;
 import org.rypt.f8.Sem;
 import org.rypt.f8.Utf8;
+import org.rypt.f8.Utf8Engine;
+import org.rypt.f8.Utf8MalformedInputException;
+import org.rypt.f8.Utf8Statistics;
+import org.rypt.f8.Utf8StringBuilder;
+import org.rypt.f8.Utf8ValidatingInputStream;
+import org.rypt.f8.Utf8ValidatingOutputStream;
 import org.rypt.f8.Validity;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import java.util.stream.IntStream;
 
 import static java.nio.charset.StandardCharsets.*;
@@ -16,6 +37,9 @@ import static org.junit.Assert.*;
 
 public class ValidityTest {
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Test
     public void testCharacteristics() {
         for (Validity v : Validity.values()) {
@@ -38,6 +62,242 @@ public class ValidityTest {
         });
     }
 
+    @Test
+    public void testPaddedArray() {
+        Sem.testAllCombinations(test -> {
+            byte[] sems = test.generate();
+            for (int pad = 0; pad <= 17; pad += 4) {
+                byte[] b = new byte[pad + sems.length + pad];
+                System.arraycopy(sems, 0, b, pad, sems.length);
+                for (int from = 0; from < 2 && from <= b.length; from++) {
+                    assertSame(Jdk.validity(b, from, b.length), Utf8.validity(b, from, b.length));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testAsciiPrefixLength() {
+        for (int len = 0; len < 40; len++) {
+            byte[] b = new byte[len];
+            IntStream.range(0, len).forEach(i -> b[i] = (byte)(i % 128));
+            for (int from = 0; from <= len; from++) {
+                assertEquals(len - from, Utf8.asciiPrefixLength(b, from, len));
+            }
+            for (int i = 0; i < len; i++) {
+                b[i] = (byte)0x80;
+                for (int from = 0; from <= len; from++) {
+                    for (int to = from; to <= len; to++) {
+                        assertEquals((i < from ? to : Math.min(i, to)) - from, Utf8.asciiPrefixLength(b, from, to));
+                    }
+                }
+                b[i] = (byte)0xff;
+                assertEquals(i, Utf8.asciiPrefixLength(b, 0, len));
+                b[i] = 0x7f;
+            }
+        }
+    }
+
+    @Test
+    public void testVectorArray() {
+        byte[] ascii = new byte[200];
+        Arrays.fill(ascii, (byte)'a');
+        byte[] latin = String.join("", Collections.nCopies(100, "\u00e9")).getBytes(UTF_8);
+        int[] offsets = {0, 13, 29, 31, 32, 61, 63, 64, 100};
+        Sem.testAllCombinations(test -> {
+            byte[] sems = test.generate();
+            for (byte[] pad : new byte[][]{ascii, latin}) {
+                for (int at : offsets) {
+                    byte[] b = pad.clone();
+                    System.arraycopy(sems, 0, b, at, sems.length);
+                    assertSame(Utf8.validity(b, 0, b.length), Utf8.vectorValidity(b, 0, b.length));
+                    int to = at + sems.length;
+                    assertSame(Utf8.validity(b, 0, to), Utf8.vectorValidity(b, 0, to));
+                    assertSame(Utf8.validity(b, Math.min(1, to), to), Utf8.vectorValidity(b, Math.min(1, to), to));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDfaArray() {
+        Utf8Engine dfa = Utf8.dfa();
+        byte[] latin = String.join("", Collections.nCopies(100, "\u00e9")).getBytes(UTF_8);
+        int[] offsets = {0, 13, 31, 61, 63, 64, 100};
+        Sem.testAllCombinations(test -> {
+            byte[] sems = test.generate();
+            for (int from = 0; from < sems.length; from++) {
+                for (int to = from; to <= sems.length; to++) {
+                    assertSame(Utf8.validity(sems, from, to), dfa.validity(sems, from, to));
+                }
+            }
+            for (int at : offsets) {
+                byte[] b = latin.clone();
+                System.arraycopy(sems, 0, b, at, sems.length);
+                assertSame(Utf8.validity(b, 0, b.length), dfa.validity(b, 0, b.length));
+                int to = at + sems.length;
+                assertSame(Utf8.validity(b, Math.min(1, to), to), dfa.validity(b, Math.min(1, to), to));
+            }
+        });
+    }
+
+    @Test
+    public void testValidateColumn() {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        List<Integer> offsets = new ArrayList<>();
+        offsets.add(0);
+        Sem.combinations(3).forEach(sems -> {
+            byte[] row = sems.generate();
+            data.write(row, 0, row.length);
+            offsets.add(data.size());
+            if (offsets.size() % 7 == 0) { //an empty row
+                offsets.add(data.size());
+            }
+        });
+        assertColumn(data.toByteArray(), offsets.stream().mapToInt(Integer::intValue).toArray());
+
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+        Random random = new Random();
+        for (int i = 0; i < 20; i++) {
+            //valid as a whole, but split into rows at random, so that some rows are not
+            byte[] b = anyChar.generate(20000).getBytes(UTF_8);
+            if (i % 2 == 1) {
+                for (int j = 0; j < i; j++) {
+                    b[random.nextInt(b.length)] = (byte)random.nextInt(256);
+                }
+            }
+            int[] o = new int[b.length / 10];
+            for (int j = 1; j < o.length; j++) {
+                o[j] = Math.min(b.length, o[j - 1] + random.nextInt(50));
+            }
+            assertColumn(b, o);
+            for (int j = 1; j < o.length; j++) { //split at code point boundaries, so that valid bytes make valid rows
+                o[j] = Math.max(o[j], o[j - 1]);
+                while (o[j] < b.length && b[o[j]] < (byte)0xc0) {
+                    o[j]++;
+                }
+            }
+            assertColumn(b, o);
+        }
+
+        assertEquals(0, Utf8.validateColumn(new byte[0], new int[]{0}, 0).length);
+        for (int[] o : new int[][]{{0, 2, 1}, {0, 1, 5}, {-1, 0, 1}}) {
+            try {
+                Utf8.validateColumn(new byte[4], o, 2);
+                fail();
+            } catch (IllegalArgumentException | IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+
+    private static void assertColumn(byte[] data, int[] offsets) {
+        int rows = offsets.length - 1;
+        int[] codePoints = new int[rows];
+        long[] bitmap = Utf8.validateColumn(data, offsets, rows, codePoints);
+        assertArrayEquals(bitmap, Utf8.validateColumn(data, offsets, rows));
+        assertEquals(rows + 63 >>> 6, bitmap.length);
+        for (int i = 0; i < rows; i++) {
+            boolean valid = Utf8.validity(data, offsets[i], offsets[i + 1]).isFullyValid();
+            assertEquals(valid, (bitmap[i >>> 6] >>> i & 1) != 0);
+            assertEquals(Utf8.countCodePoints(data, offsets[i], offsets[i + 1]), codePoints[i]);
+        }
+    }
+
+    @Test
+    public void testBigVectorArray() {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] b = anyChar.generate(10000).getBytes(UTF_8);
+            for (;;) {
+                Validity result = Jdk.validity(b);
+                assertSame(result, Utf8.vectorValidity(b, 0, b.length));
+                if (result == Validity.MALFORMED) {
+                    break;
+                }
+                int to = (int)(Math.random() * b.length);
+                assertSame(Utf8.validity(b, 0, to), Utf8.vectorValidity(b, 0, to));
+                b[(int)(Math.random() * b.length)] = (byte)(Math.random() * 256);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelArray() {
+        Sem.testAllCombinations(test -> {
+            byte[] b = test.generate();
+            for (int chunkSize = 1; chunkSize <= 4; chunkSize++) {
+                for (int from = 0; from < 2 && from <= b.length; from++) {
+                    for (int to = from; to <= b.length; to++) {
+                        assertSame(Utf8.validity(b, from, to), Utf8.parallelValidity(b, from, to, chunkSize));
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testBigParallelArray() {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] b = anyChar.generate(10000).getBytes(UTF_8);
+            for (;;) {
+                Validity result = Jdk.validity(b);
+                assertSame(result, Utf8.parallelValidity(b, 0, b.length, 1 + i));
+                if (result == Validity.MALFORMED) {
+                    break;
+                }
+                int to = (int)(Math.random() * b.length);
+                assertSame(Utf8.validity(b, 0, to), Utf8.parallelValidity(b, 0, to, 1 + i));
+                b[(int)(Math.random() * b.length)] = (byte)(Math.random() * 256);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelPath() throws IOException {
+        Path file = tmp.newFile().toPath();
+        Sem.combinations(3).forEach(test -> {
+            byte[] b = test.generate();
+            try {
+                Files.write(file, b);
+                for (int chunkSize = 1; chunkSize <= 3; chunkSize++) {
+                    assertSame(Jdk.validity(b), Utf8.parallelValidity(file, chunkSize));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testBigParallelPath() throws IOException {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        Path file = tmp.newFile().toPath();
+        for (int i = 0; i < 20; i++) {
+            byte[] b = anyChar.generate(10000).getBytes(UTF_8);
+            for (;;) {
+                Validity result = Jdk.validity(b);
+                Files.write(file, b);
+                assertSame(result, Utf8.parallelValidity(file, 1000 + i));
+                if (result == Validity.MALFORMED) {
+                    break;
+                }
+                b[(int)(Math.random() * b.length)] = (byte)(Math.random() * 256);
+            }
+        }
+    }
+
     @Test
     public void testStream() {
         Sem.testAllCombinations(test -> {
@@ -52,6 +312,226 @@ public class ValidityTest {
         });
     }
 
+    @Test
+    public void testStreamBufferSize() {
+        Sem.testAllCombinations(test -> {
+            byte[] b = test.generate();
+            Validity expected = Jdk.validity(b);
+            for (int bufferSize = 4; bufferSize <= 6; bufferSize++) {
+                try {
+                    assertSame(expected, Utf8.validity(new ByteArrayInputStream(b), bufferSize));
+                    assertSame(expected, Utf8.validity(Channels.newChannel(new ByteArrayInputStream(b)), bufferSize));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        for (int bufferSize : new int[]{Integer.MIN_VALUE, 0, 3}) {
+            try {
+                Utf8.validity(new ByteArrayInputStream(new byte[0]), bufferSize);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedRanges() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            byte[] padded = new byte[8 + bytes.length + 8];
+            Arrays.fill(padded, (byte)'a');
+            System.arraycopy(bytes, 0, padded, 8, bytes.length);
+            for (int from : new int[]{0, 8}) {
+                for (int to : new int[]{8 + bytes.length, padded.length}) {
+                    int[] ranges = Utf8.malformedRanges(padded, from, to);
+                    assertEquals(expected(padded, from, to), replace(padded, from, to, ranges));
+                    assertEquals(ranges.length == 0 ? -1 : ranges[0], Utf8.firstMalformedIndex(padded, from, to));
+                }
+            }
+            int[] ranges = Utf8.malformedRanges(bytes, 0, bytes.length);
+            assertEquals(Jdk.malformedOffset(bytes), Utf8.firstMalformedIndex(bytes, 0, bytes.length));
+            for (int chunk : new int[]{1, 3, bytes.length + 1}) {
+                try {
+                    assertArrayEquals(Arrays.stream(ranges).asLongStream().toArray(),
+                            Utf8.malformedRanges(new ChunkedInputStream(bytes, chunk)));
+                    assertEquals(ranges.length == 0 ? -1 : ranges[0],
+                            Utf8.firstMalformedIndex(new ChunkedInputStream(bytes, chunk)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testBigMalformedRanges() throws IOException {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            byte[] bytes = anyChar.generate(30000).getBytes(UTF_8);
+            assertEquals(0, Utf8.malformedRanges(bytes, 0, bytes.length).length);
+            assertEquals(-1, Utf8.firstMalformedIndex(new ByteArrayInputStream(bytes)));
+            for (int j = 0; j < i; j++) {
+                bytes[(int)(Math.random() * bytes.length)] = (byte)(Math.random() * 256);
+            }
+            int[] ranges = Utf8.malformedRanges(bytes, 0, bytes.length);
+            assertEquals(expected(bytes, 0, bytes.length), replace(bytes, 0, bytes.length, ranges));
+            assertEquals(Jdk.malformedOffset(bytes), Utf8.firstMalformedIndex(bytes, 0, bytes.length));
+            assertArrayEquals(Arrays.stream(ranges).asLongStream().toArray(),
+                    Utf8.malformedRanges(new ChunkedInputStream(bytes, 1000)));
+        }
+    }
+
+    private static String expected(byte[] bytes, int from, int to) {
+        Utf8StringBuilder sb = new Utf8StringBuilder();
+        sb.write(bytes, from, to - from);
+        sb.close();
+        return sb.toString();
+    }
+
+    /**
+     * Decodes the valid bytes between the specified malformed ranges, and replaces each range with U+FFFD
+     */
+    private static String replace(byte[] bytes, int from, int to, int[] ranges) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ranges.length; i += 2) {
+            assertTrue(ranges[i] >= from && ranges[i + 1] > 0);
+            sb.append(new String(bytes, from, ranges[i] - from, UTF_8)).append('\uFFFD');
+            from = ranges[i] + ranges[i + 1];
+        }
+        return sb.append(new String(bytes, from, to - from, UTF_8)).toString();
+    }
+
+    private static class ChunkedInputStream extends ByteArrayInputStream {
+        private final int chunk;
+
+        ChunkedInputStream(byte[] bytes, int chunk) {
+            super(bytes);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, chunk));
+        }
+    }
+
+    @Test
+    public void testConcurrentStreams() throws Exception {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+        byte[][] inputs = new byte[64][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = anyChar.generate(10000).getBytes(UTF_8);
+            if (i % 2 == 0) {
+                inputs[i][(int)(Math.random() * inputs[i].length)] = (byte)0xff;
+            }
+        }
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            byte[] b = inputs[i % inputs.length];
+            try {
+                assertSame(Jdk.validity(b), Utf8.validity(new ByteArrayInputStream(b), 1000 + i));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testByteBuffer() {
+        Sem.testAllCombinations(test -> {
+            byte[] sems = test.generate();
+            byte[] b = new byte[8 + sems.length + 8];
+            System.arraycopy(sems, 0, b, 8, sems.length);
+            ByteBuffer direct = ByteBuffer.allocateDirect(b.length);
+            direct.put(b).clear();
+            for (int from = 0; from <= b.length; from += 4) {
+                for (int to = from; to <= b.length; to += Math.max(1, Math.min(b.length - to, 4))) {
+                    Validity expected = Utf8.validity(b, from, to);
+                    for (ByteBuffer buf : new ByteBuffer[]{ByteBuffer.wrap(b), direct, direct.asReadOnlyBuffer()}) {
+                        buf.limit(to).position(from);
+                        assertSame(expected, Utf8.validity(buf));
+                        assertSame(expected, Utf8.validity(buf.slice()));
+                        assertEquals(from, buf.position());
+                        buf.clear();
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testChannel() {
+        Sem.testAllCombinations(test -> {
+            byte[] b = test.generate();
+            for (int from = 0; from < 2 && from <= b.length; from++) {
+                Validity expected = Jdk.validity(b, from, b.length);
+                Validity actual = Utf8.validity(Channels.newChannel(new ByteArrayInputStream(b, from, b.length - from)));
+                assertSame(expected, actual);
+            }
+        });
+    }
+
+    @Test
+    public void testBigChannel() throws IOException {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] b = anyChar.generate(10000).getBytes(UTF_8);
+            for (;;) {
+                Validity result = Jdk.validity(b);
+                assertSame(result, Utf8.validity(Channels.newChannel(new ByteArrayInputStream(b))));
+                if (result == Validity.MALFORMED) {
+                    break;
+                }
+                b[(int)(Math.random() * b.length)] = (byte)(Math.random() * 256);
+            }
+        }
+    }
+
+    @Test
+    public void testPath() throws IOException {
+        Path file = tmp.newFile().toPath();
+        Sem.combinations(3).forEach(test -> {
+            byte[] b = test.generate();
+            try {
+                Files.write(file, b);
+                assertSame(Jdk.validity(b), Utf8.validity(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testBigPath() throws IOException {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        Path file = tmp.newFile().toPath();
+        for (int i = 0; i < 20; i++) {
+            byte[] b = anyChar.generate(10000).getBytes(UTF_8);
+            for (;;) {
+                Validity result = Jdk.validity(b);
+                Files.write(file, b);
+                assertSame(result, Utf8.validity(file));
+                if (result == Validity.MALFORMED) {
+                    break;
+                }
+                b[(int)(Math.random() * b.length)] = (byte)(Math.random() * 256);
+            }
+        }
+    }
+
     @Test
     public void testBigStream() throws IOException {
         RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
@@ -82,4 +562,103 @@ public class ValidityTest {
             assertSame(Validity.ASCII, Utf8.validity(new ByteArrayInputStream(b)));
         }
     }
+
+    @Test
+    public void testValidatingOutputStream() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            long expected = Jdk.malformedOffset(bytes);
+            for (int chunk : new int[]{1, 3, bytes.length + 1}) {
+                ByteArrayOutputStream sink = new ByteArrayOutputStream();
+                long offset = -1;
+                try (OutputStream out = new Utf8ValidatingOutputStream(sink)) {
+                    for (int i = 0; i < bytes.length; i += chunk) {
+                        if (chunk == 1) {
+                            out.write(bytes[i]);
+                        } else {
+                            out.write(bytes, i, Math.min(chunk, bytes.length - i));
+                        }
+                    }
+                } catch (Utf8MalformedInputException e) {
+                    offset = e.getOffset();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                assertEquals(expected, offset);
+                if (expected == -1 || chunk == 1) {
+                    assertArrayEquals(Arrays.copyOf(bytes, Math.max(sink.size(), 0)), sink.toByteArray());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testValidatingInputStream() {
+        Sem.testAllCombinations(sems -> {
+            byte[] bytes = sems.generate();
+            long expected = Jdk.malformedOffset(bytes);
+            for (int chunk : new int[]{1, 3, bytes.length + 1}) {
+                ByteArrayOutputStream sink = new ByteArrayOutputStream();
+                long offset = -1;
+                try (InputStream in = new Utf8ValidatingInputStream(new ByteArrayInputStream(bytes))) {
+                    byte[] buf = new byte[chunk];
+                    for (int n; (n = chunk == 1 ? in.read() : in.read(buf)) != -1; ) {
+                        if (chunk == 1) {
+                            sink.write(n);
+                        } else {
+                            sink.write(buf, 0, n);
+                        }
+                    }
+                } catch (Utf8MalformedInputException e) {
+                    offset = e.getOffset();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                assertEquals(expected, offset);
+                if (expected == -1) {
+                    assertArrayEquals(bytes, sink.toByteArray());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testValidatingStatistics() throws IOException {
+        RandomStringGenerator anyChar = new RandomStringGenerator.Builder()
+                .withinRange(0, Character.MAX_CODE_POINT)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] bytes = anyChar.generate(10000).getBytes(UTF_8);
+            bytes[(int)(Math.random() * bytes.length)] = (byte)(Math.random() * 256);
+            Utf8Statistics expected = new Utf8Statistics();
+            expected.write(bytes);
+            expected.close();
+
+            Utf8Statistics stats = new Utf8Statistics();
+            ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            try (OutputStream out = new Utf8ValidatingOutputStream(sink, stats)) {
+                out.write(bytes, 0, 777);
+                out.write(bytes, 777, bytes.length - 777);
+            }
+            assertArrayEquals(bytes, sink.toByteArray());
+            assertEquals(expected.toString(), stats.toString());
+
+            stats = new Utf8Statistics();
+            try (InputStream in = new Utf8ValidatingInputStream(new ByteArrayInputStream(bytes), stats)) {
+                assertEquals(100, in.skip(100));
+                assertEquals(bytes.length - 100, in.skip(Long.MAX_VALUE));
+                assertEquals(-1, in.read());
+            }
+            assertEquals(expected.toString(), stats.toString());
+
+            long offset = Jdk.malformedOffset(bytes);
+            try (InputStream in = new Utf8ValidatingInputStream(new ByteArrayInputStream(bytes))) {
+                in.skip(Long.MAX_VALUE);
+                assertEquals(-1, offset);
+            } catch (Utf8MalformedInputException e) {
+                assertEquals(offset, e.getOffset());
+            }
+        }
+    }
 }